@@ -0,0 +1,432 @@
+package com.test.app.loadtest.v2;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.test.app.v2.ContextWordFinder;
+import com.test.app.v2.ContextWordTrie;
+import com.test.app.v2.MatchResult;
+import com.test.app.v2.MatchType;
+import com.test.app.v2.MorseWordAnalyzer;
+
+/**
+ * Drive a context word trie with synthetic load, and report throughput and latency by match type.
+ *
+ * 	1. A dictionary of random context words is built. Word lengths are uniform between the
+ * 	   shortest and the longest length. A share of the morse words get a second context word,
+ * 	   spelled differently from the same elements, so they are ambiguous.
+ * 	2. Morse word queries are drawn from the dictionary. A share of them are truncated by a
+ * 	   few elements, and a share have a few random elements appended.
+ * 	3. The queries are split between the threads, and each thread looks them up at its share
+ * 	   of the target rate. With a target rate, latency is measured from the time a query was
+ * 	   due, not from the time it was sent, so a stall is not hidden by the queries waiting
+ * 	   behind it.
+ *
+ * Queries are generated before the run, so only look-ups are timed.
+ *
+ */
+public class ContextWordLoadTest {
+	private static String Elements = ".-";
+	private static String DefaultMorseTable = "c:\\data\\morsecodetable.txt";
+
+	private ContextWordTrie dictionary;
+
+	private int numWords = 100000;
+	private int minWordLength = 1;
+	private int maxWordLength = 12;
+	private int numQueries = 1000000;
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Queries per second over all threads, or 0 for as fast as possible
+	 */
+	private long targetRate;
+
+	/**
+	 * Shares of ambiguous morse words, truncated queries and queries with extra elements, in percent
+	 */
+	private int ambiguousPercent = 5;
+	private int truncatedPercent = 20;
+	private int extraPercent = 20;
+
+	/**
+	 * Largest number of elements dropped or appended
+	 */
+	private int maxNoise = 3;
+
+	private long seed = 1;
+
+	/**
+	 * @param dictionary Empty context word trie, filled by {@link #run()}
+	 */
+	public ContextWordLoadTest(ContextWordTrie dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	public void setNumWords(int numWords) {
+		this.numWords = numWords;
+	}
+
+	public void setWordLength(int minWordLength, int maxWordLength) {
+		this.minWordLength = Math.max(1, minWordLength);
+		this.maxWordLength = Math.max(this.minWordLength, maxWordLength);
+	}
+
+	public void setNumQueries(int numQueries) {
+		this.numQueries = numQueries;
+	}
+
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	public void setTargetRate(long targetRate) {
+		this.targetRate = Math.max(0, targetRate);
+	}
+
+	public void setNoise(int ambiguousPercent, int truncatedPercent, int extraPercent, int maxNoise) {
+		this.ambiguousPercent = ambiguousPercent;
+		this.truncatedPercent = truncatedPercent;
+		this.extraPercent = extraPercent;
+		this.maxNoise = Math.max(1, maxNoise);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public ContextWordTrie getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Build the dictionary, generate the queries and look them up.
+	 *
+	 * @return Report of the run
+	 */
+	public Report run() throws Exception {
+		Random random = new Random(seed);
+		List<String> morseWordList = buildDictionary(random);
+		final String[] queries = generateQueries(morseWordList, random);
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<long[]>> futureList = new ArrayList<Future<long[]>>();
+			final byte[] matchTypes = new byte[queries.length];
+			final long start = System.nanoTime() + 10000000L;
+
+			for (int t = 0; t < numThreads; t++) {
+				final int first = t;
+				futureList.add(executor.submit(new Callable<long[]>() {
+					public long[] call() {
+						return drive(queries, first, matchTypes, start);
+					}
+				}));
+			}
+
+			long[] latencies = new long[queries.length];
+			for (int t = 0; t < numThreads; t++) {
+				long[] threadLatencies = futureList.get(t).get();
+				for (int i = t, k = 0; i < queries.length; i += numThreads, k++) {
+					latencies[i] = threadLatencies[k];
+				}
+			}
+			long elapsed = System.nanoTime() - start;
+
+			return new Report(latencies, matchTypes, elapsed);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Look up every numThreads-th query from the first one.
+	 *
+	 * @return Latencies in nanoseconds
+	 */
+	private long[] drive(String[] queries, int first, byte[] matchTypes, long start) {
+		MatchResult result = new MatchResult();
+		long[] latencies = new long[(queries.length - first + numThreads - 1) / numThreads];
+
+		// interval between the queries of one thread
+		double interval = targetRate > 0 ? 1e9 * numThreads / targetRate : 0;
+		
+		// all threads start together
+		while (System.nanoTime() < start) {
+			Thread.yield();
+		}
+
+		for (int i = first, k = 0; i < queries.length; i += numThreads, k++) {
+			long due = interval > 0 ? start + (long) (k * interval) : System.nanoTime();
+			while (System.nanoTime() < due) {
+				Thread.yield();
+			}
+
+			dictionary.getBestMatch(queries[i], result);
+			latencies[k] = System.nanoTime() - due;
+			matchTypes[i] = (byte) result.getMatchType().ordinal();
+		}
+		return latencies;
+	}
+
+	/**
+	 * @return Morse words of the dictionary
+	 */
+	private List<String> buildDictionary(Random random) {
+		Map<String, String> morseCodeMap = dictionary.getMorseCodeMap();
+		String[] letters = new String[morseCodeMap.size()];
+		int numLetters = 0;
+		for (String ch : morseCodeMap.keySet()) {
+			if (ch.length() == 1 && Character.isLetter(ch.charAt(0))) {
+				letters[numLetters++] = ch;
+			}
+		}
+		if (numLetters == 0) {
+			throw new IllegalStateException("Morse code table of the dictionary has no letters");
+		}
+		Arrays.sort(letters, 0, numLetters);
+
+		// code to character, to spell a morse word differently
+		Map<String, String> characterMap = new HashMap<String, String>();
+		int maxCodeLength = 0;
+		for (int i = 0; i < numLetters; i++) {
+			String code = morseCodeMap.get(letters[i]);
+			characterMap.put(code, letters[i]);
+			maxCodeLength = Math.max(maxCodeLength, code.length());
+		}
+
+		List<String> morseWordList = new ArrayList<String>(numWords);
+		StringBuilder sb = new StringBuilder();
+
+		for (int n = 0; n < numWords; n++) {
+			int length = minWordLength + random.nextInt(maxWordLength - minWordLength + 1);
+			sb.setLength(0);
+			for (int i = 0; i < length; i++) {
+				sb.append(letters[random.nextInt(numLetters)]);
+			}
+
+			String morseWord = dictionary.encode(sb.toString()).getKey();
+			dictionary.put(morseWord, sb.toString());
+			morseWordList.add(morseWord);
+
+			if (random.nextInt(100) < ambiguousPercent) {
+				String respelled = respell(morseWord, characterMap, maxCodeLength, random);
+				if (respelled != null) {
+					dictionary.put(morseWord, respelled);
+				}
+			}
+		}
+		return morseWordList;
+	}
+
+	/**
+	 * Spell the morse word with randomly chosen codes.
+	 *
+	 * @return Context word, or null if the morse word cannot be spelled that way
+	 */
+	private static String respell(String morseWord, Map<String, String> characterMap, int maxCodeLength, Random random) {
+		StringBuilder sb = new StringBuilder();
+		int i = 0;
+
+		while (i < morseWord.length()) {
+			int longest = Math.min(maxCodeLength, morseWord.length() - i);
+			int first = 1 + random.nextInt(longest);
+			String ch = null;
+			int length = first;
+
+			// try every code length, starting from a random one
+			for (int tried = 0; tried < longest && ch == null; tried++) {
+				length = 1 + (first - 1 + tried) % longest;
+				ch = characterMap.get(morseWord.substring(i, i + length));
+			}
+			if (ch == null) {
+				return null;
+			}
+
+			sb.append(ch);
+			i += length;
+		}
+		return sb.toString();
+	}
+
+	private String[] generateQueries(List<String> morseWordList, Random random) {
+		String[] queries = new String[numQueries];
+		StringBuilder sb = new StringBuilder();
+
+		for (int n = 0; n < numQueries; n++) {
+			String morseWord = morseWordList.get(random.nextInt(morseWordList.size()));
+			int noise = 1 + random.nextInt(maxNoise);
+			int dice = random.nextInt(100);
+
+			if (dice < truncatedPercent && morseWord.length() > noise) {
+				queries[n] = morseWord.substring(0, morseWord.length() - noise);
+			} else if (dice >= truncatedPercent && dice < truncatedPercent + extraPercent) {
+				sb.setLength(0);
+				sb.append(morseWord);
+				for (int i = 0; i < noise; i++) {
+					sb.append(Elements.charAt(random.nextInt(Elements.length())));
+				}
+				queries[n] = sb.toString();
+			} else {
+				queries[n] = morseWord;
+			}
+		}
+		return queries;
+	}
+
+	/**
+	 * Throughput and latency percentiles of a run, by match type.
+	 */
+	public static class Report {
+		private long elapsed;
+		private int numQueries;
+
+		/**
+		 * Sorted latencies in nanoseconds of each match type
+		 */
+		private Map<MatchType, long[]> latencyMap = new EnumMap<MatchType, long[]>(MatchType.class);
+
+		private long[] allLatencies;
+
+		Report(long[] latencies, byte[] matchTypes, long elapsed) {
+			this.elapsed = elapsed;
+			this.numQueries = latencies.length;
+
+			int[] counts = new int[MatchType.values().length];
+			for (byte matchType : matchTypes) {
+				counts[matchType]++;
+			}
+
+			for (MatchType matchType : MatchType.values()) {
+				long[] typeLatencies = new long[counts[matchType.ordinal()]];
+				int k = 0;
+				for (int i = 0; i < latencies.length; i++) {
+					if (matchTypes[i] == matchType.ordinal()) {
+						typeLatencies[k++] = latencies[i];
+					}
+				}
+				Arrays.sort(typeLatencies);
+				latencyMap.put(matchType, typeLatencies);
+			}
+
+			allLatencies = latencies.clone();
+			Arrays.sort(allLatencies);
+		}
+
+		/**
+		 * @return Queries per second
+		 */
+		public double getThroughput() {
+			return numQueries * 1e9 / elapsed;
+		}
+
+		public int getCount(MatchType matchType) {
+			return latencyMap.get(matchType).length;
+		}
+
+		/**
+		 * @param matchType Match type, or null for all queries
+		 * @param percentile Percentile, such as 99.9
+		 * @return Latency in nanoseconds, or 0 if no query has the match type
+		 */
+		public long getLatency(MatchType matchType, double percentile) {
+			long[] latencies = matchType != null ? latencyMap.get(matchType) : allLatencies;
+			if (latencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+			return latencies[Math.max(0, Math.min(latencies.length - 1, index))];
+		}
+
+		public void print(PrintStream out) {
+			out.printf("%d queries in %.3f s, %.0f queries/s%n", numQueries, elapsed / 1e9, getThroughput());
+			out.printf("%-10s %10s %10s %10s %10s %10s%n", "match", "count", "p50 us", "p99 us", "p999 us", "max us");
+
+			for (MatchType matchType : MatchType.values()) {
+				print(out, matchType.name(), matchType);
+			}
+			print(out, "ALL", null);
+		}
+
+		private void print(PrintStream out, String name, MatchType matchType) {
+			long[] latencies = matchType != null ? latencyMap.get(matchType) : allLatencies;
+			out.printf("%-10s %10d %10.1f %10.1f %10.1f %10.1f%n", name, latencies.length,
+					getLatency(matchType, 50) / 1e3, getLatency(matchType, 99) / 1e3,
+					getLatency(matchType, 99.9) / 1e3, getLatency(matchType, 100) / 1e3);
+		}
+	}
+
+	/**
+	 * Options, each followed by a number:
+	 *
+	 * 	-words, -minLength, -maxLength, -queries, -threads, -rate (queries/s, 0 for as fast as
+	 * 	possible), -ambiguous, -truncated, -extra (percent), -noise (elements), -seed
+	 */
+	public static void main(String[] args) throws Exception {
+		// the morse code table comes first, as the dictionary takes it when it is created
+		String table = DefaultMorseTable;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-table")) {
+				table = args[i + 1];
+			}
+		}
+		ContextWordFinder.inputMorseTable(table);
+
+		ContextWordTrie dictionary = new ContextWordTrie(new MorseWordAnalyzer(), ContextWordFinder.MorseCodeMap);
+		ContextWordLoadTest loadTest = new ContextWordLoadTest(dictionary);
+
+		int minLength = loadTest.minWordLength;
+		int maxLength = loadTest.maxWordLength;
+		int ambiguousPercent = loadTest.ambiguousPercent;
+		int truncatedPercent = loadTest.truncatedPercent;
+		int extraPercent = loadTest.extraPercent;
+		int maxNoise = loadTest.maxNoise;
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (args[i].equals("-table")) {
+				continue;
+			}
+			long value = Long.parseLong(args[i + 1]);
+
+			if (args[i].equals("-words")) {
+				loadTest.setNumWords((int) value);
+			} else if (args[i].equals("-minLength")) {
+				minLength = (int) value;
+			} else if (args[i].equals("-maxLength")) {
+				maxLength = (int) value;
+			} else if (args[i].equals("-queries")) {
+				loadTest.setNumQueries((int) value);
+			} else if (args[i].equals("-threads")) {
+				loadTest.setNumThreads((int) value);
+			} else if (args[i].equals("-rate")) {
+				loadTest.setTargetRate(value);
+			} else if (args[i].equals("-ambiguous")) {
+				ambiguousPercent = (int) value;
+			} else if (args[i].equals("-truncated")) {
+				truncatedPercent = (int) value;
+			} else if (args[i].equals("-extra")) {
+				extraPercent = (int) value;
+			} else if (args[i].equals("-noise")) {
+				maxNoise = (int) value;
+			} else if (args[i].equals("-seed")) {
+				loadTest.setSeed(value);
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			}
+		}
+		loadTest.setWordLength(minLength, maxLength);
+		loadTest.setNoise(ambiguousPercent, truncatedPercent, extraPercent, maxNoise);
+
+		loadTest.run().print(System.out);
+	}
+}
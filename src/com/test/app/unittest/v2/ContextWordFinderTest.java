@@ -1,13 +1,62 @@
 package com.test.app.unittest.v2;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import com.test.app.loadtest.v2.ContextWordLoadTest;
+import com.test.app.v2.AsyncContextWordLookup;
+import com.test.app.v2.ContextWordBeamSearch;
+import com.test.app.v2.ContextWordCursor;
 import com.test.app.v2.ContextWordFinder;
+import com.test.app.v2.ContextWordJournal;
+import com.test.app.v2.LookupStatus;
+import com.test.app.v2.LookupTracer;
+import com.test.app.v2.MatchResult;
+import com.test.app.v2.MatchType;
+import com.test.app.v2.MorseInputParser;
+import com.test.app.v2.MorseKeyingDecoder;
+import com.test.app.v2.MorseAlphabetRegistry;
+import com.test.app.v2.MorseStreamEncoder;
+import com.test.app.v2.MorseSuffixIndex;
 import com.test.app.v2.MorseWordAnalyzer;
 import com.test.app.v2.MorseWordToContextWord;
+import com.test.app.v2.OverlayContextWordTrie;
+import com.test.app.v2.RadixContextWordTrie;
+import com.test.app.v2.ResultWriter;
 import com.test.app.v2.ContextWordTrie;
+import com.test.app.v2.ContextWordTrieBuilder;
+import com.test.app.v2.ContextWordTrieStats;
+import com.test.app.v2.CorpusIngester;
+import com.test.util.inttrie.v2.CharKeyAnalyzer;
+import com.test.util.inttrie.v2.IntKeyAnalyzer;
+import com.test.util.inttrie.v2.IntKeyBuffer;
+import com.test.util.inttrie.v2.IntTrie;
+import com.test.util.trie.v2.TrieEntry;
 
 import junit.framework.TestCase;
 
@@ -307,4 +356,1505 @@ public class ContextWordFinderTest extends TestCase {
 		assertTrue(set.contains("IN?"));
 		System.out.println("----- end testMultiplePrefixMatches -----");
 	}
+	
+	public void testLongMorseWordAndUnknownPrefix() {
+		System.out.println("----- start testLongMorseWordAndUnknownPrefix -----");
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		// a concatenated phrase long enough to overflow the stack if walked recursively
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			sb.append(i % 3 == 0 ? '-' : '.');
+		}
+		String longMorseWord = sb.toString();
+		dictionary.put(longMorseWord, "PHRASE");
+		dictionary.put("..", "I");
+		
+		Set<String> set = dictionary.get(longMorseWord);
+		assertTrue(set.contains("PHRASE") && set.size() == 1);
+		
+		set = dictionary.getBestMatch(longMorseWord); // exact
+		assertTrue(set.contains("PHRASE") && set.size() == 1);
+		
+		set = dictionary.getBestMatch(longMorseWord + "--"); // extra
+		assertTrue(set.contains("PHRASE?") && set.size() == 1);
+		
+		set = dictionary.getBestMatch(longMorseWord.substring(0, 50000)); // truncated
+		assertTrue(set.contains("PHRASE?") && set.size() == 1);
+		
+		// unknown prefix is a miss, not an exception
+		assertTrue(dictionary.get("..-") == null);
+		assertTrue(dictionary.get(".-.-") == null);
+		
+		set = dictionary.getBestMatch(".-.-");
+		assertTrue(set.isEmpty());
+		
+		set = dictionary.getBestMatch("");
+		assertTrue(set.isEmpty());
+		
+		System.out.println("----- end testLongMorseWordAndUnknownPrefix -----");
+	}
+	
+	public void testParallelBuild() throws Exception {
+		System.out.println("----- start testParallelBuild -----");
+		
+		List<String> contextWords = new ArrayList<String>();
+		String[] syllables = {"SA", "LE", "S", "FOR", "CE", "MAN", "MEN", "WH", "AT", "EN", "O", "M"};
+		for (int i = 0; i < syllables.length; i++) {
+			for (int j = 0; j < syllables.length; j++) {
+				for (int k = 0; k < syllables.length; k++) {
+					contextWords.add(syllables[i] + syllables[j] + syllables[k]);
+				}
+			}
+		}
+		contextWords.add("");
+		
+		ContextWordTrie serial = new ContextWordFinder().getDictionary();
+		for (String contextWord : contextWords) {
+			serial.put(contextWord);
+		}
+		
+		ContextWordTrie parallel = new ContextWordFinder().getDictionary();
+		new ContextWordTrieBuilder(4).build(parallel, contextWords);
+		
+		Collections.sort(contextWords);
+		ContextWordTrie sorted = new ContextWordFinder().getDictionary();
+		new ContextWordTrieBuilder(4).buildSorted(sorted, contextWords);
+		
+		// one thread builds on the calling thread
+		ContextWordTrie single = new ContextWordFinder().getDictionary();
+		new ContextWordTrieBuilder(1).build(single, contextWords);
+		ContextWordTrie singleSorted = new ContextWordFinder().getDictionary();
+		new ContextWordTrieBuilder(1).buildSorted(singleSorted, contextWords);
+		
+		for (String contextWord : contextWords) {
+			String morseWord = serial.encode(contextWord).getKey();
+			if (morseWord.length() == 0) {
+				continue;
+			}
+			
+			Set<String> expected = serial.get(morseWord);
+			assertTrue(expected.equals(parallel.get(morseWord)));
+			assertTrue(expected.equals(sorted.get(morseWord)));
+			assertTrue(expected.equals(single.get(morseWord)) && expected.equals(singleSorted.get(morseWord)));
+			
+			// truncated and extra elements
+			String truncated = morseWord.substring(0, morseWord.length() / 2 + 1);
+			assertTrue(serial.getBestMatch(truncated).equals(parallel.getBestMatch(truncated)));
+			assertTrue(serial.getBestMatch(truncated).equals(sorted.getBestMatch(truncated)));
+			assertTrue(serial.getBestMatch(morseWord + "-.").equals(parallel.getBestMatch(morseWord + "-.")));
+		}
+		
+		System.out.println("----- end testParallelBuild -----");
+	}
+	
+	public void testMatchType() {
+		System.out.println("----- start testMatchType -----");
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		dictionary.put(".--.-.----....", "WROTH");
+		dictionary.put(".-.--..--..-...", "APPLE");
+		dictionary.put(".-.--..--..-...", "CXDTS");
+		dictionary.put(".-.--..--..-...", "APPLES");
+		
+		LookupStatus status = new LookupStatus();
+		Set<String> set = dictionary.getBestMatch(".--.-.----....", status);
+		assertTrue(set.contains("WROTH") && set.size() == 1);
+		assertTrue(status.getMatchType() == MatchType.EXACT && status.isPerfectMatch());
+		
+		// the best words are precomputed, so the same set is returned each time
+		assertSame(set, dictionary.getBestMatch(".--.-.----....", status));
+		
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.contains("APPLE") && set.contains("CXDTS") && set.size() == 2);
+		assertTrue(status.getMatchType() == MatchType.AMBIGUOUS && status.isPerfectMatch());
+		
+		try {
+			set.add("PEAR");
+			fail("best match must not be modifiable");
+		} catch (UnsupportedOperationException e) {
+		}
+		
+		set = dictionary.getBestMatch(".--.-.----..", status);
+		assertTrue(set.contains("WROTH") && set.size() == 1);
+		assertTrue(status.getMatchType() == MatchType.TRUNCATED && status.isPerfectMatch() == false);
+		
+		set = dictionary.getBestMatch(".--.-.----......", status);
+		assertTrue(set.contains("WROTH") && set.size() == 1);
+		assertTrue(status.getMatchType() == MatchType.EXTRA && status.isPerfectMatch() == false);
+		
+		set = dictionary.getBestMatch("-", status);
+		assertTrue(set.isEmpty());
+		assertTrue(status.getMatchType() == MatchType.NONE);
+		
+		// adding a shorter word updates the best words
+		dictionary.put(".-.--..--..-...", "ABC");
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.contains("ABC") && set.size() == 1);
+		assertTrue(status.getMatchType() == MatchType.AMBIGUOUS);
+		
+		System.out.println("----- end testMatchType -----");
+	}
+	
+	public void testPrefixEnumeration() {
+		System.out.println("----- start testPrefixEnumeration -----");
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		dictionary.put(".--.....--", "WHAT");
+		dictionary.put(".--.....-.", "WHEN");
+		dictionary.put(".--......-..", "WHERE");
+		dictionary.put(".--....---", "WHO");
+		dictionary.put(".--....-----", "WHOM");
+		dictionary.put(".--", "W");
+		dictionary.put("-", "T");
+		
+		List<String> prefix = dictionary.getAnalyzer().analyze(".--");
+		
+		// depth first
+		Set<String> wordSet = new HashSet<String>();
+		Iterator<TrieEntry<String, String>> it = dictionary.iterator(prefix);
+		while (it.hasNext()) {
+			TrieEntry<String, String> entry = it.next();
+			StringBuilder sb = new StringBuilder();
+			for (String element : entry.getKey()) {
+				sb.append(element);
+			}
+			assertTrue(dictionary.get(sb.toString()).contains(entry.getValue()));
+			wordSet.add(entry.getValue());
+		}
+		assertTrue(wordSet.size() == 6 && wordSet.contains("W") && wordSet.contains("WHOM"));
+		
+		// breadth first gives the shallowest word first
+		it = dictionary.iterator(prefix, true, 2);
+		assertTrue(it.next().getValue().equals("W"));
+		it.next();
+		assertTrue(it.hasNext() == false);
+		
+		// unknown prefix
+		assertTrue(dictionary.iterator(dictionary.getAnalyzer().analyze("-.-.-")).hasNext() == false);
+		
+		// parallel stream over the whole trie
+		List<String> prefixEmpty = new ArrayList<String>();
+		assertTrue(dictionary.stream(prefixEmpty, true).count() == 7);
+		assertTrue(dictionary.stream(prefix, false).limit(3).count() == 3);
+		
+		System.out.println("----- end testPrefixEnumeration -----");
+	}
+	
+	public void testIntTrie() {
+		System.out.println("----- start testIntTrie -----");
+		
+		IntTrie<CharSequence, String> intTrie = new IntTrie<CharSequence, String>(new CharKeyAnalyzer());
+		intTrie.put(".--.....--", "WHAT");
+		intTrie.put(".--.....-.", "WHEN");
+		intTrie.put(".--.....-.", "WHEEE");
+		intTrie.put("-", "T");
+		intTrie.put("", "BLANK");
+		
+		Set<String> set = intTrie.get(".--.....-.");
+		assertTrue(set.contains("WHEN") && set.contains("WHEEE") && set.size() == 2);
+		assertTrue(intTrie.get("-").contains("T"));
+		assertTrue(intTrie.get(".--") == null);
+		assertTrue(intTrie.get("-.") == null);
+		assertTrue(intTrie.get("") == null);
+		assertTrue(intTrie.getChildren().size() == 2);
+		
+		// other alphabets: tokens are words of a phrase
+		IntTrie<String[], String> phraseTrie = new IntTrie<String[], String>(new IntKeyAnalyzer<String[]>() {
+			public void analyze(String[] input, IntKeyBuffer keys) {
+				for (String word : input) {
+					keys.add(word.length());
+				}
+			}
+		});
+		phraseTrie.put(new String[] {"SALES", "FORCE"}, "5-5");
+		assertTrue(phraseTrie.get(new String[] {"WROTH", "WHERE"}).contains("5-5"));
+		
+		System.out.println("----- end testIntTrie -----");
+	}
+	
+	public void testMultipleAlphabets() {
+		System.out.println("----- start testMultipleAlphabets -----");
+		
+		// American Morse codes differ from International ones for some characters
+		Map<String, String> americanCodeMap = new HashMap<String, String>(ContextWordFinder.MorseCodeMap);
+		americanCodeMap.put("C", ".. .");
+		americanCodeMap.put("O", ". .");
+		americanCodeMap.put("R", ". ..");
+		
+		MorseAlphabetRegistry registry = new MorseAlphabetRegistry();
+		registry.register("International", ContextWordFinder.MorseCodeMap);
+		registry.register("American", americanCodeMap);
+		
+		List<String> contextWords = new ArrayList<String>();
+		contextWords.add("SALESFORCE");
+		contextWords.add("WROTH");
+		registry.putAll(contextWords);
+		
+		Set<String> set = registry.getBestMatch("International", "....-.-........-.---.-.-.-..");
+		assertTrue(set.contains("SALESFORCE") && set.size() == 1);
+		
+		// same morse word is not a word in American Morse
+		set = registry.getBestMatch("American", "....-.-........-.---.-.-.-..");
+		assertTrue(set.contains("SALESFORCE") == false);
+		
+		MorseWordToContextWord mwcc = registry.getDictionary("American").encode("SALESFORCE");
+		set = registry.getBestMatch("American", mwcc.getKey());
+		assertTrue(set.contains("SALESFORCE") && set.size() == 1);
+		
+		// context words are shared by the alphabets
+		String international = registry.getDictionary("International").get("....-.-........-.---.-.-.-..").iterator().next();
+		String american = registry.getDictionary("American").get(mwcc.getKey()).iterator().next();
+		assertSame(international, american);
+		
+		// still shared when the vocabulary is larger than the word pool
+		registry = new MorseAlphabetRegistry();
+		registry.register("International", ContextWordFinder.MorseCodeMap);
+		registry.register("American", americanCodeMap);
+		contextWords.clear();
+		for (int i = 0; i < 70000; i++) {
+			StringBuilder sb = new StringBuilder("W");
+			for (int n = i; n > 0; n /= 26) {
+				sb.append((char) ('A' + n % 26));
+			}
+			contextWords.add(sb.toString());
+		}
+		registry.putAll(contextWords);
+		for (int i = 0; i < contextWords.size(); i += 9999) {
+			String contextWord = contextWords.get(i);
+			international = null;
+			for (String word : registry.getDictionary("International").get(
+					registry.getDictionary("International").encode(contextWord).getKey())) {
+				if (word.equals(contextWord)) {
+					international = word;
+				}
+			}
+			american = null;
+			for (String word : registry.getDictionary("American").get(
+					registry.getDictionary("American").encode(contextWord).getKey())) {
+				if (word.equals(contextWord)) {
+					american = word;
+				}
+			}
+			assertTrue(international != null);
+			assertSame(international, american);
+		}
+		
+		try {
+			registry.getBestMatch("Wabun", "..");
+			fail("Wabun is not registered");
+		} catch (IllegalArgumentException e) {
+		}
+		
+		System.out.println("----- end testMultipleAlphabets -----");
+	}
+	
+	public void testStreamEncoder() throws Exception {
+		System.out.println("----- start testStreamEncoder -----");
+		
+		String text = "The statistics tell the story. In seven months, the number of people using the service " +
+					  "each month has jumped 26 percent to nearly a quarter of a billion, affirming Skype's status " +
+					  "as one of the crown jewels of consumer Internet services. ";
+		
+		// repeat the text so it spans several buffers
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			sb.append(text);
+		}
+		text = sb.toString();
+		
+		MorseWordAnalyzer analyzer = new MorseWordAnalyzer();
+		StringBuilder expected = new StringBuilder();
+		for (MorseWordToContextWord mwcc : analyzer.analyzeText(text, ContextWordFinder.MorseCodeMap)) {
+			if (expected.length() > 0) {
+				expected.append(' ');
+			}
+			expected.append(mwcc.getKey());
+		}
+		
+		MorseStreamEncoder encoder = new MorseStreamEncoder(ContextWordFinder.MorseCodeMap);
+		StringWriter writer = new StringWriter();
+		encoder.encode(new StringReader(text), writer);
+		assertTrue(expected.toString().equals(writer.toString()));
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		encoder.encode(Channels.newChannel(new ByteArrayInputStream(text.getBytes("US-ASCII"))), Channels.newChannel(out));
+		assertTrue(expected.toString().equals(out.toString("US-ASCII")));
+		
+		System.out.println("----- end testStreamEncoder -----");
+	}
+	
+	public void testCorpusIngestion() throws Exception {
+		System.out.println("----- start testCorpusIngestion -----");
+		
+		File corpus = File.createTempFile("corpus", ".txt");
+		corpus.deleteOnExit();
+		
+		// large enough to be split into several chunks
+		Writer writer = new BufferedWriter(new FileWriter(corpus));
+		try {
+			for (int i = 0; i < 100000; i++) {
+				writer.write("The sales of Salesforce, the SALESMAN said; sales!\n");
+			}
+		} finally {
+			writer.close();
+		}
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		CorpusIngester ingester = new CorpusIngester(ContextWordFinder.MorseCodeMap, 4);
+		int numWords = ingester.ingest(corpus.getPath(), dictionary);
+		assertTrue(numWords == 6);
+		
+		MorseWordToContextWord mwcc = dictionary.encode("SALES");
+		assertTrue(dictionary.getWeight(mwcc.getKey(), "SALES") == 200000);
+		
+		mwcc = dictionary.encode("SALESFORCE");
+		assertTrue(dictionary.getWeight(mwcc.getKey(), "SALESFORCE") == 100000);
+		
+		Set<String> set = dictionary.getBestMatch(dictionary.encode("SALESMAN").getKey());
+		assertTrue(set.contains("SALESMAN") && set.size() == 1);
+		
+		System.out.println("----- end testCorpusIngestion -----");
+	}
+	
+	public void testRemoveAndCompact() {
+		System.out.println("----- start testRemoveAndCompact -----");
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		dictionary.put("SALE");
+		dictionary.put("SALES");
+		dictionary.put("SALESFORCE");
+		dictionary.put("SALESMAN");
+		dictionary.put(".-.--..--..-...", "APPLE");
+		dictionary.put(".-.--..--..-...", "CXDTS");
+		dictionary.put(".-.--..--..-...", "APPLES");
+		
+		// SALESFORCE is pruned up to the node of SALES
+		String salesforce = dictionary.encode("SALESFORCE").getKey();
+		assertTrue(dictionary.remove("SALESFORCE"));
+		assertTrue(dictionary.remove("SALESFORCE") == false);
+		assertTrue(dictionary.getSubTrie(salesforce) == null);
+		assertTrue(dictionary.getSubTrie(dictionary.encode("SALES").getKey()) != null);
+		
+		// morse word: SALESF
+		Set<String> set = dictionary.getBestMatch("....-.-........-.");
+		assertTrue(set.contains("SALES?") && set.size() == 1);
+		
+		// best words are updated
+		LookupStatus status = new LookupStatus();
+		assertTrue(dictionary.remove(".-.--..--..-...", "APPLE"));
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.contains("CXDTS") && set.size() == 1);
+		assertTrue(status.getMatchType() == MatchType.AMBIGUOUS);
+		
+		assertTrue(dictionary.remove(".-.--..--..-...", "CXDTS"));
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.contains("APPLES") && set.size() == 1);
+		assertTrue(status.getMatchType() == MatchType.EXACT);
+		
+		dictionary.compact();
+		
+		// the dictionary still works after compaction
+		set = dictionary.getBestMatch(".-.--..--..-...");
+		assertTrue(set.contains("APPLES") && set.size() == 1);
+		
+		dictionary.put("SALESFORCE");
+		set = dictionary.getBestMatch(salesforce);
+		assertTrue(set.contains("SALESFORCE") && set.size() == 1);
+		
+		assertTrue(dictionary.remove(".-.--..--..-...", "APPLES"));
+		assertTrue(dictionary.getSubTrie(".-.--..--..-...") == null);
+		assertTrue(dictionary.getBestMatch(".-.--..--..-...").isEmpty());
+		
+		// all context words as long: the best words are all the words
+		dictionary.put(".-.--..--..-...", "APPLE");
+		dictionary.put(".-.--..--..-...", "CXDTS");
+		ContextWordTrie node = dictionary.getSubTrie(".-.--..--..-...");
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.equals(node.getValueSet()) && set.size() == 2);
+		
+		// a longer context word is not a best word
+		dictionary.put(".-.--..--..-...", "APPLES");
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.contains("APPLES") == false && set.size() == 2 && node.getValueSet().size() == 3);
+		dictionary.compact();
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.contains("APPLES") == false && set.size() == 2);
+		
+		// back to the same lengths, then a shorter context word
+		assertTrue(dictionary.remove(".-.--..--..-...", "APPLES"));
+		node = dictionary.getSubTrie(".-.--..--..-...");
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.equals(node.getValueSet()) && set.size() == 2);
+		dictionary.put(".-.--..--..-...", "AB");
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.contains("AB") && set.size() == 1);
+		assertTrue(dictionary.remove(".-.--..--..-...", "AB"));
+		set = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertTrue(set.equals(node.getValueSet()) && set.size() == 2);
+		
+		System.out.println("----- end testRemoveAndCompact -----");
+	}
+	
+	public void testRadixTrie() {
+		System.out.println("----- start testRadixTrie -----");
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		String[] contextWords = {"IM", "IN", "INEE", "SALE", "SALES", "SALESFORCE", "SALESMAN", "SALESMEN", 
+								 "SALES1", "SALES2", "SALES3", "SALES4", "SALES5", "EARTHQUAKE", "WHAT"};
+		for (String contextWord : contextWords) {
+			dictionary.put(contextWord);
+		}
+		dictionary.put(".--.-.----....", "WROTH");
+		dictionary.put(".--.-.----....", "WROTIEE");
+		dictionary.put(".-.--..--..-...", "APPLE");
+		dictionary.put(".-.--..--..-...", "CXDTS");
+		
+		RadixContextWordTrie radix = new RadixContextWordTrie(dictionary);
+		
+		// every prefix of every morse word, with and without extra elements
+		List<String> morseWordList = new ArrayList<String>();
+		morseWordList.add(".--.-.----....");
+		morseWordList.add(".-.--..--..-...");
+		for (String contextWord : contextWords) {
+			morseWordList.add(dictionary.encode(contextWord).getKey());
+		}
+		
+		for (String morseWord : morseWordList) {
+			for (int len = 1; len <= morseWord.length(); len++) {
+				String prefix = morseWord.substring(0, len);
+				assertTrue(dictionary.getBestMatch(prefix).equals(radix.getBestMatch(prefix)));
+				assertTrue(dictionary.getBestMatch(prefix + "-").equals(radix.getBestMatch(prefix + "-")));
+				assertTrue(dictionary.getBestMatch(prefix + ".-.").equals(radix.getBestMatch(prefix + ".-.")));
+			}
+		}
+		
+		// a node per branching point or context word, instead of one per element
+		int numWords = (int) dictionary.stream(new ArrayList<String>(), false).count();
+		assertTrue(radix.getNodeCount() < 2 * numWords);
+		
+		System.out.println("----- end testRadixTrie -----");
+	}
+	
+	public void testMatchResult() {
+		System.out.println("----- start testMatchResult -----");
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		String[] contextWords = {"IM", "IN", "SALE", "SALES", "SALESFORCE", "SALESMAN", "SALESMEN", "WHAT"};
+		for (String contextWord : contextWords) {
+			dictionary.put(contextWord);
+		}
+		dictionary.put(".-.--..--..-...", "APPLE");
+		dictionary.put(".-.--..--..-...", "CXDTS");
+		dictionary.put(".-.--..--..-...", "APPLES");
+		
+		// one result is reused for all look-ups
+		MatchResult result = new MatchResult();
+		LookupStatus status = new LookupStatus();
+		StringBuilder morseWord = new StringBuilder();
+		
+		List<String> morseWordList = new ArrayList<String>();
+		morseWordList.add(".-.--..--..-...");
+		for (String contextWord : contextWords) {
+			morseWordList.add(dictionary.encode(contextWord).getKey());
+		}
+		
+		for (String morse : morseWordList) {
+			for (int len = 1; len <= morse.length() + 2; len++) {
+				morseWord.setLength(0);
+				morseWord.append(morse, 0, Math.min(len, morse.length()));
+				if (len > morse.length()) {
+					morseWord.append(len % 2 == 0 ? "-" : "-.");
+				}
+				
+				Set<String> set = dictionary.getBestMatch(morseWord.toString(), status);
+				assertSame(result, dictionary.getBestMatch(morseWord, result));
+				assertTrue(set.equals(new HashSet<String>(result.getWords())) && set.size() == result.size());
+				assertTrue(status.getMatchType() == result.getMatchType());
+			}
+		}
+		
+		// words are not decorated; the match type tells how they are matched
+		dictionary.getBestMatch(".-.--..--..-...", result);
+		assertTrue(result.size() == 2 && result.getWords().contains("APPLE") && result.getWords().contains("CXDTS"));
+		assertTrue(result.getMatchType() == MatchType.AMBIGUOUS && result.isPerfectMatch());
+		
+		// morse word: SALESF
+		dictionary.getBestMatch("....-.-........-.", result);
+		assertTrue(result.size() == 1 && result.getWord(0).equals("SALESFORCE"));
+		assertTrue(result.getMatchType() == MatchType.TRUNCATED && result.isPerfectMatch() == false);
+		
+		dictionary.getBestMatch("-", result);
+		assertTrue(result.isEmpty() && result.getMatchType() == MatchType.NONE);
+		
+		// a perfect match returns the precomputed view of the node, with or without a tracer
+		Set<String> bestSet = dictionary.getBestMatch(".-.--..--..-...", status);
+		assertSame(bestSet, dictionary.getBestMatch(".-.--..--..-...", status));
+		assertTrue(status.getMatchType() == MatchType.AMBIGUOUS && bestSet.size() == 2);
+		dictionary.setTracer(new LookupTracer(4, 1));
+		assertSame(bestSet, dictionary.getBestMatch(".-.--..--..-...", status));
+		assertTrue(dictionary.getTracer().getTraces().size() == 1);
+		dictionary.setTracer(null);
+		
+		// words of several nodes are merged without duplicates
+		dictionary.put("....", "IM");
+		dictionary.getBestMatch("..", result);
+		assertTrue(result.getMatchType() == MatchType.TRUNCATED && result.size() == 2);
+		assertTrue(result.getWords().contains("IM") && result.getWords().contains("IN"));
+		
+		System.out.println("----- end testMatchResult -----");
+	}
+	
+	public void testAsyncLookup() throws Exception {
+		System.out.println("----- start testAsyncLookup -----");
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		ContextWordTrie dictionary = finder.getDictionary();
+		dictionary.put("SALES");
+		dictionary.put("SALESFORCE");
+		
+		// tasks wait here until they are run by hand
+		final List<Runnable> taskList = new ArrayList<Runnable>();
+		Executor executor = new Executor() {
+			public void execute(Runnable task) {
+				taskList.add(task);
+			}
+		};
+		
+		AsyncContextWordLookup lookup = new AsyncContextWordLookup(dictionary, executor, 2, 2);
+		String sales = dictionary.encode("SALES").getKey();
+		CompletableFuture<Set<String>> first = lookup.tryLookup(sales);
+		CompletableFuture<Set<String>> second = lookup.tryLookup(sales + "..-.");
+		
+		// the limit is reached
+		CompletableFuture<Set<String>> third = lookup.tryLookup(sales);
+		assertTrue(third.isCompletedExceptionally() && lookup.getAvailableSlots() == 0);
+		try {
+			third.get();
+			fail("look-up must be rejected");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		
+		for (Runnable task : taskList) {
+			task.run();
+		}
+		assertTrue(first.get().contains("SALES") && first.get().size() == 1);
+		assertTrue(second.get().contains("SALESFORCE?") && second.get().size() == 1);
+		assertTrue(lookup.getAvailableSlots() == 2);
+		
+		// beyond the limit, the caller is not blocked and the look-up waits for a slot
+		taskList.clear();
+		first = lookup.lookup(sales);
+		second = lookup.lookup(sales);
+		third = lookup.lookup(sales + "..-.");
+		assertTrue(taskList.size() == 2 && lookup.getPendingCount() == 1 && third.isDone() == false);
+		for (int i = 0; i < taskList.size(); i++) {
+			taskList.get(i).run();
+		}
+		assertTrue(taskList.size() == 3 && lookup.getPendingCount() == 0);
+		assertTrue(third.get().contains("SALESFORCE?") && lookup.getAvailableSlots() == 2);
+		
+		// once the queue of waiting look-ups is full, a look-up is rejected without blocking
+		taskList.clear();
+		for (int i = 0; i < 4; i++) {
+			assertTrue(lookup.lookup(sales).isDone() == false);
+		}
+		assertTrue(taskList.size() == 2 && lookup.getPendingCount() == 2);
+		CompletableFuture<Set<String>> rejected = lookup.lookup(sales);
+		assertTrue(rejected.isCompletedExceptionally() && lookup.getPendingCount() == 2);
+		try {
+			rejected.get();
+			fail("queue is full");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+		}
+		for (int i = 0; i < taskList.size(); i++) {
+			taskList.get(i).run();
+		}
+		assertTrue(lookup.getPendingCount() == 0 && lookup.getAvailableSlots() == 2);
+		
+		// the limit is checked before a pool is created for it
+		try {
+			new AsyncContextWordLookup(dictionary, 0, 1);
+			fail("limit must be positive");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Concurrency limit must be positive"));
+		}
+		
+		// batch on a pool of its own, more morse words than the limit
+		lookup = new AsyncContextWordLookup(dictionary, 2, 100);
+		List<String> morseWordList = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			morseWordList.add(i % 2 == 0 ? sales : sales + "..-.");
+		}
+		List<Set<String>> resultList = lookup.lookupAll(morseWordList).get();
+		assertTrue(resultList.size() == 100);
+		assertTrue(resultList.get(0).contains("SALES") && resultList.get(99).contains("SALESFORCE?"));
+		lookup.shutdown();
+		
+		System.out.println("----- end testAsyncLookup -----");
+	}
+	
+	public void testJournal() throws Exception {
+		System.out.println("----- start testJournal -----");
+		
+		File dir = File.createTempFile("journal", "");
+		dir.delete();
+		dir.mkdirs();
+		dir.deleteOnExit();
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		ContextWordJournal journal = new ContextWordJournal(dictionary, dir.getPath());
+		assertTrue(journal.recover() == 0);
+		journal.setGroupSize(2);
+		
+		journal.put("SALES");
+		journal.put("SALESFORCE");
+		journal.put("WROTH");
+		String wroth = dictionary.encode("WROTH").getKey();
+		journal.put(wroth, "WROTIEE", 5);
+		assertTrue(journal.remove(wroth, "WROTH"));
+		assertTrue(journal.remove(wroth, "WROTH") == false);
+		journal.close();
+		assertTrue(journal.getLogSize() == 5);
+		
+		// a line cut short by a crash
+		FileOutputStream out = new FileOutputStream(new File(dir, "journal.log"), true);
+		try {
+			out.write("+\t--..--..--\tZIZ".getBytes("US-ASCII"));
+		} finally {
+			out.close();
+		}
+		
+		ContextWordTrie recovered = new ContextWordFinder().getDictionary();
+		journal = new ContextWordJournal(recovered, dir.getPath());
+		assertTrue(journal.recover() == 5);
+		assertTrue(recovered.getBestMatch(dictionary.encode("SALES").getKey()).contains("SALES"));
+		assertTrue(recovered.getBestMatch(wroth).contains("WROTIEE") && recovered.getBestMatch(wroth).size() == 1);
+		assertTrue(recovered.getWeight(wroth, "WROTIEE") == 5);
+		assertTrue(recovered.getSubTrie("--..--..--") == null);
+		
+		try {
+			journal.recover();
+			fail("journal is already recovered");
+		} catch (IllegalStateException e) {
+		}
+		
+		// a crash after the snapshot replaced the old one but before the log was emptied
+		File logFile = new File(dir, "journal.log");
+		byte[] logBytes = Files.readAllBytes(logFile.toPath());
+		journal.snapshot();
+		assertTrue(journal.getLogSize() == 0);
+		journal.close();
+		Files.write(logFile.toPath(), logBytes);
+		
+		recovered = new ContextWordFinder().getDictionary();
+		journal = new ContextWordJournal(recovered, dir.getPath());
+		assertTrue(journal.recover() == 5);
+		assertTrue(recovered.getWeight(wroth, "WROTIEE") == 5);
+		
+		// the snapshot replaces the log
+		journal.snapshot();
+		assertTrue(journal.getLogSize() == 0);
+		journal.put("EARTHQUAKE");
+		journal.close();
+		
+		// a line which cannot be parsed before a valid one
+		logBytes = Files.readAllBytes(logFile.toPath());
+		out = new FileOutputStream(logFile);
+		try {
+			out.write("7\t*\t.-\n".getBytes("US-ASCII"));
+			out.write(logBytes);
+		} finally {
+			out.close();
+		}
+		
+		ContextWordTrie restarted = new ContextWordFinder().getDictionary();
+		journal = new ContextWordJournal(restarted, dir.getPath());
+		assertTrue(journal.recover() == 2);
+		assertTrue(journal.getCorruptLineCount() == 1);
+		assertTrue(restarted.getBestMatch(dictionary.encode("EARTHQUAKE").getKey()).contains("EARTHQUAKE"));
+		assertTrue(restarted.getBestMatch(dictionary.encode("SALESFORCE").getKey()).contains("SALESFORCE"));
+		assertTrue(restarted.getWeight(wroth, "WROTIEE") == 5);
+		journal.close();
+		
+		for (File file : dir.listFiles()) {
+			file.delete();
+		}
+		
+		System.out.println("----- end testJournal -----");
+	}
+	
+	public void testLoadTest() throws Exception {
+		System.out.println("----- start testLoadTest -----");
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		ContextWordLoadTest loadTest = new ContextWordLoadTest(dictionary);
+		loadTest.setNumWords(2000);
+		loadTest.setWordLength(2, 8);
+		loadTest.setNumQueries(20000);
+		loadTest.setNumThreads(4);
+		loadTest.setNoise(20, 20, 20, 3);
+		
+		ContextWordLoadTest.Report report = loadTest.run();
+		report.print(System.out);
+		
+		int numQueries = 0;
+		for (MatchType matchType : MatchType.values()) {
+			numQueries += report.getCount(matchType);
+		}
+		assertTrue(numQueries == 20000);
+		assertTrue(report.getCount(MatchType.EXACT) > 0 && report.getCount(MatchType.AMBIGUOUS) > 0);
+		assertTrue(report.getCount(MatchType.TRUNCATED) > 0 && report.getCount(MatchType.EXTRA) > 0);
+		assertTrue(report.getLatency(null, 50) <= report.getLatency(null, 99.9));
+		assertTrue(report.getThroughput() > 0);
+		
+		// at a target rate
+		loadTest = new ContextWordLoadTest(new ContextWordFinder().getDictionary());
+		loadTest.setNumWords(100);
+		loadTest.setNumQueries(200);
+		loadTest.setNumThreads(2);
+		loadTest.setTargetRate(10000);
+		report = loadTest.run();
+		assertTrue(report.getThroughput() < 15000);
+		
+		System.out.println("----- end testLoadTest -----");
+	}
+	
+	public void testTrieStats() {
+		System.out.println("----- start testTrieStats -----");
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		dictionary.put("SALES");
+		dictionary.put("SALESFORCE");
+		dictionary.put("SALESMAN");
+		dictionary.put(".-.--..--..-...", "APPLE");
+		dictionary.put(".-.--..--..-...", "CXDTS");
+		
+		// one long chain, deeper than a recursive walk could go
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 20000; i++) {
+			sb.append(i % 3 == 0 ? '-' : '.');
+		}
+		dictionary.put(sb.toString(), "LONG");
+		
+		ContextWordTrieStats stats = ContextWordTrieStats.collect(dictionary, 1);
+		stats.print(System.out);
+		
+		assertTrue(stats.getMaxDepth() == 20000);
+		assertTrue(stats.getValueNodeCount() == 5 && stats.getWordCount() == 6);
+		assertTrue(stats.getWordsPerNode()[2] == 1 && stats.getWordsPerNode()[1] == 4);
+		assertTrue(stats.getLongestChain() > 19000);
+		
+		// every node but the root is a child of a node one level up
+		long numNodes = 1;
+		for (int depth = 0; depth < stats.getMaxDepth(); depth++) {
+			long[] fanOut = stats.getFanOut(depth);
+			for (int children = 0; children < fanOut.length; children++) {
+				numNodes += children * fanOut[children];
+			}
+		}
+		assertTrue(numNodes == stats.getNodeCount());
+		
+		// the subtrees of "." and "-" retain all but the root
+		long subtreeSize = 0;
+		for (long size : stats.getSubtreeSizes().values()) {
+			subtreeSize += size;
+		}
+		assertTrue(stats.getSubtreeSizes().size() == 2);
+		assertTrue(subtreeSize < stats.getEstimatedSize() && stats.getEstimatedSize() - subtreeSize < 1000);
+		
+		System.out.println("----- end testTrieStats -----");
+	}
+	
+	public void testLookupTracer() {
+		System.out.println("----- start testLookupTracer -----");
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		dictionary.put("SALES");
+		dictionary.put("SALESFORCE");
+		dictionary.put("SALESMAN");
+		String sales = dictionary.encode("SALES").getKey();
+		
+		// not traced
+		LookupTracer tracer = new LookupTracer(3, 1);
+		dictionary.getBestMatch(sales);
+		assertTrue(tracer.getTraces().isEmpty());
+		
+		dictionary.setTracer(tracer);
+		dictionary.getBestMatch(sales);
+		dictionary.getBestMatch(sales + "..-.");
+		dictionary.getBestMatch(sales + "---");
+		
+		List<LookupTracer.LookupTrace> traceList = tracer.getTraces();
+		tracer.dump(System.out);
+		assertTrue(traceList.size() == 3);
+		
+		LookupTracer.LookupTrace trace = traceList.get(0);
+		assertTrue(trace.getMatchType() == MatchType.EXACT && trace.getDepth() == sales.length());
+		assertTrue(trace.getWords().contains("SALES") && trace.getNodesVisited() == sales.length());
+		
+		// SALESF is 5 elements short of SALESFORCE
+		trace = traceList.get(1);
+		assertTrue(trace.getMatchType() == MatchType.TRUNCATED && trace.getMatchedLength() == sales.length() + 4);
+		assertTrue(trace.getDepth() == dictionary.encode("SALESFORCE").getKey().length());
+		assertTrue(trace.getWords().contains("SALESFORCE") && trace.getNodeCount() == 1);
+		assertTrue(trace.getNodesVisited() > trace.getMatchedLength());
+		
+		trace = traceList.get(2);
+		assertTrue(trace.getMatchType() == MatchType.EXTRA && trace.getDepth() == sales.length());
+		assertTrue(trace.getMatchedLength() < sales.length() + 3);
+		
+		// the oldest record is overwritten
+		dictionary.getBestMatch("-");
+		traceList = tracer.getTraces();
+		assertTrue(traceList.size() == 3 && traceList.get(2).getMatchType() == MatchType.NONE);
+		assertTrue(traceList.get(0).getMatchType() == MatchType.TRUNCATED);
+		
+		// sampling off
+		tracer.setSampleRate(0);
+		dictionary.getBestMatch(sales);
+		assertTrue(tracer.getTraces().get(2).getMatchType() == MatchType.NONE);
+		
+		dictionary.setTracer(null);
+		
+		System.out.println("----- end testLookupTracer -----");
+	}
+	
+	public void testInputParser() throws Exception {
+		System.out.println("----- start testInputParser -----");
+		
+		File input = File.createTempFile("input", ".txt");
+		input.deleteOnExit();
+		
+		String[] contextWords = {"SALES", "salesforce", "  Wroth \t", "IM", "", "IN"};
+		StringBuilder morseWords = new StringBuilder();
+		
+		Writer writer = new BufferedWriter(new FileWriter(input));
+		try {
+			for (Map.Entry<String, String> entry : ContextWordFinder.MorseCodeMap.entrySet()) {
+				writer.write(entry.getKey() + "\t" + entry.getValue() + "\r\n");
+			}
+			writer.write("*\r\n");
+			for (String contextWord : contextWords) {
+				writer.write(contextWord + "\r\n");
+			}
+			writer.write(" * \n");
+			
+			// a line longer than the buffer
+			for (int i = 0; i < 20000; i++) {
+				morseWords.append(i % 2 == 0 ? "..-.\t" : "....-.-...... ");
+			}
+			writer.write(morseWords.toString() + "\n");
+			writer.write(".--.-.----....");
+		} finally {
+			writer.close();
+		}
+		
+		ContextWordFinder finder = new ContextWordFinder();
+		finder.inputAll(input.getPath());
+		ContextWordTrie dictionary = finder.getDictionary();
+		
+		ContextWordTrie expected = new ContextWordFinder().getDictionary();
+		for (String contextWord : contextWords) {
+			expected.put(contextWord.trim());
+		}
+		
+		for (String contextWord : contextWords) {
+			String morseWord = expected.encode(contextWord.trim()).getKey();
+			for (int len = 1; len <= morseWord.length(); len++) {
+				assertTrue(expected.getBestMatch(morseWord.substring(0, len)).equals(dictionary.getBestMatch(morseWord.substring(0, len))));
+			}
+		}
+		assertTrue(dictionary.getBestMatch(expected.encode("WROTH").getKey()).contains("WROTH"));
+		
+		List<String> morseWordList = finder.getMorseWordList();
+		assertTrue(morseWordList.size() == 20001);
+		assertTrue(morseWordList.get(0).equals("..-.") && morseWordList.get(19999).equals("....-.-......"));
+		assertTrue(morseWordList.get(20000).equals(".--.-.----...."));
+		
+		// morse words only
+		List<String> morseWordOnlyList = new ArrayList<String>();
+		assertTrue(new MorseInputParser().readMorseWords(input.getPath(), morseWordOnlyList) > 20000);
+		
+		// context words are decoded as UTF-8, morse words are ASCII
+		File utf8 = File.createTempFile("utf8", ".txt");
+		utf8.deleteOnExit();
+		Files.write(utf8.toPath(), "caf\u00e9\nSALES\n".getBytes("UTF-8"));
+		assertTrue(new MorseInputParser().readLines(utf8.getPath()).equals(Arrays.asList("caf\u00e9", "SALES")));
+		
+		ContextWordTrie utf8Dictionary = new ContextWordFinder().getDictionary();
+		assertTrue(new MorseInputParser().readContextWords(utf8.getPath(), utf8Dictionary) == 2);
+		MorseWordToContextWord cafe = utf8Dictionary.encode("caf\u00e9");
+		assertTrue(utf8Dictionary.getBestMatch(cafe.getKey()).contains(cafe.getValue()));
+		assertTrue(new MorseInputParser(StandardCharsets.ISO_8859_1).readLines(utf8.getPath()).get(0).length() == 5);
+		
+		try {
+			new MorseInputParser().readLines(input.getPath() + ".missing");
+			fail("file does not exist");
+		} catch (FileNotFoundException e) {
+		}
+		
+		System.out.println("----- end testInputParser -----");
+	}
+	
+	public void testResultWriter() throws Exception {
+		System.out.println("----- start testResultWriter -----");
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		dictionary.put("SALES");
+		dictionary.put("SALESFORCE");
+		dictionary.put(".-.--..--..-...", "APPLE");
+		dictionary.put(".-.--..--..-...", "CXDTS");
+		dictionary.put("-", "\"T\"");
+		
+		String sales = dictionary.encode("SALES").getKey();
+		List<String> morseWordList = new ArrayList<String>();
+		morseWordList.add(sales);
+		morseWordList.add(sales + "..-.");
+		morseWordList.add("-");
+		morseWordList.add(".-.--..--..-...");
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ResultWriter writer = new ResultWriter(out, ResultWriter.Format.PLAIN);
+		writer.writeAll(dictionary, morseWordList);
+		writer.flush();
+		String[] lines = out.toString("UTF-8").split("\n");
+		assertTrue(lines.length == 5);
+		assertTrue(lines[0].equals("SALES") && lines[1].equals("SALESFORCE?") && lines[2].equals("\"T\""));
+		assertTrue(lines[3].equals("APPLE!") || lines[3].equals("CXDTS!"));
+		
+		out.reset();
+		writer = new ResultWriter(out, ResultWriter.Format.TSV);
+		writer.writeAll(dictionary, morseWordList);
+		writer.close();
+		lines = out.toString("UTF-8").split("\n");
+		assertTrue(lines.length == 4);
+		assertTrue(lines[0].equals(sales + "\tEXACT\tSALES"));
+		assertTrue(lines[1].equals(sales + "..-.\tTRUNCATED\tSALESFORCE"));
+		assertTrue(lines[3].startsWith(".-.--..--..-...\tAMBIGUOUS\t") && lines[3].contains(","));
+		
+		out.reset();
+		writer = new ResultWriter(out, ResultWriter.Format.JSON_LINES);
+		writer.writeAll(dictionary, morseWordList);
+		writer.close();
+		lines = out.toString("UTF-8").split("\n");
+		assertTrue(lines[0].equals("{\"morse\":\"" + sales + "\",\"match\":\"EXACT\",\"words\":[\"SALES\"]}"));
+		assertTrue(lines[2].equals("{\"morse\":\"-\",\"match\":\"EXACT\",\"words\":[\"\\\"T\\\"\"]}"));
+		
+		// separators within a context word are escaped, or quoted in CSV
+		dictionary.put("--", "M,\t\"M\"\n");
+		List<String> separatorList = new ArrayList<String>();
+		separatorList.add("--");
+		separatorList.add(".-.--..--..-...");
+		
+		out.reset();
+		writer = new ResultWriter(out, ResultWriter.Format.TSV);
+		writer.writeAll(dictionary, separatorList);
+		writer.close();
+		lines = out.toString("UTF-8").split("\n");
+		assertTrue(lines.length == 2);
+		assertTrue(lines[0].equals("--\tEXACT\tM\\,\\t\"M\"\\n"));
+		assertTrue(lines[1].split("\t").length == 3);
+		
+		out.reset();
+		writer = new ResultWriter(out, ResultWriter.Format.CSV);
+		writer.writeAll(dictionary, separatorList);
+		writer.close();
+		String csv = out.toString("UTF-8");
+		assertTrue(csv.startsWith("--,EXACT,\"M,\t\"\"M\"\"\n\"\n"));
+		assertTrue(csv.endsWith("\n.-.--..--..-...,AMBIGUOUS,APPLE,CXDTS\n") || csv.endsWith("\n.-.--..--..-...,AMBIGUOUS,CXDTS,APPLE\n"));
+		
+		// more than the buffer holds, in input order
+		for (int i = 0; i < 18; i++) {
+			morseWordList.addAll(morseWordList);
+		}
+		out.reset();
+		writer = new ResultWriter(out, ResultWriter.Format.TSV);
+		writer.writeAll(dictionary, morseWordList);
+		writer.close();
+		lines = out.toString("UTF-8").split("\n");
+		assertTrue(out.size() > 1024 * 1024 && lines.length == morseWordList.size());
+		assertTrue(lines[lines.length - 3].equals(sales + "..-.\tTRUNCATED\tSALESFORCE"));
+		
+		System.out.println("----- end testResultWriter -----");
+	}
+	
+	public void testOverlay() {
+		System.out.println("----- start testOverlay -----");
+		
+		ContextWordTrie base = new ContextWordFinder().getDictionary();
+		ContextWordTrie single = new ContextWordFinder().getDictionary();
+		String[] baseWords = {"SALES", "SALESFORCE", "IM", "IN", "THE", "TEA"};
+		String[] tenantWords = {"SALT", "SALESMAN", "I", "TEAM", "EM"};
+		for (String contextWord : baseWords) {
+			base.put(contextWord);
+			single.put(contextWord);
+		}
+		
+		// a base word and a tenant word of the same morse word
+		base.put(".-.--..--..-...", "CXDTS");
+		single.put(".-.--..--..-...", "CXDTS");
+		String sales = single.encode("SALES").getKey();
+		base.put(sales, "SALES", 3);
+		
+		// the base is complete before it is shared
+		OverlayContextWordTrie overlay = new OverlayContextWordTrie(base);
+		for (String contextWord : tenantWords) {
+			overlay.put(contextWord);
+			single.put(contextWord);
+		}
+		overlay.put(".-.--..--..-...", "APPLE");
+		single.put(".-.--..--..-...", "APPLE");
+		
+		// every prefix, with an element appended, and with elements no word has appended
+		List<String> morseWordList = new ArrayList<String>();
+		morseWordList.add(".-.--..--..-...");
+		for (String contextWord : tenantWords) {
+			morseWordList.add(single.encode(contextWord).getKey());
+		}
+		for (String contextWord : baseWords) {
+			morseWordList.add(single.encode(contextWord).getKey());
+		}
+		
+		for (String morseWord : morseWordList) {
+			for (int i = 1; i <= morseWord.length(); i++) {
+				String prefix = morseWord.substring(0, i);
+				assertTrue(overlay.getBestMatch(prefix).equals(single.getBestMatch(prefix)));
+				assertTrue(overlay.getBestMatch(prefix + "-").equals(single.getBestMatch(prefix + "-")));
+				assertTrue(overlay.getBestMatch(prefix + ".-.").equals(single.getBestMatch(prefix + ".-.")));
+			}
+		}
+		
+		assertTrue(overlay.getBestMatch(".-.--..--..-...").size() == 2);
+		assertTrue(overlay.getBestMatch(".-.--..--..-...").contains("APPLE!"));
+		assertTrue(overlay.getBestMatch("..").equals(Collections.singleton("I")));
+		
+		LookupStatus status = new LookupStatus();
+		assertTrue(overlay.getBestMatch(single.encode("SALT").getKey(), status).contains("SALT"));
+		assertTrue(status.getMatchType() == MatchType.EXACT);
+		
+		// the base is not changed by the overlay
+		assertTrue(base.getBestMatch(single.encode("SALT").getKey()).contains("SALT") == false);
+		assertTrue(base.getBestMatch(".-.--..--..-...").equals(Collections.singleton("CXDTS")));
+		assertTrue(overlay.getOverlay().getBestMatch(".-.--..--..-...").equals(Collections.singleton("APPLE")));
+		
+		// overlays share the base
+		OverlayContextWordTrie other = new OverlayContextWordTrie(base);
+		assertTrue(other.getBase() == overlay.getBase());
+		assertTrue(other.getBestMatch(single.encode("SALT").getKey()).contains("SALT") == false);
+		
+		// weights of both layers add up, and the base keeps its own
+		other.put(sales, "SALES", 4);
+		assertTrue(other.getWeight(sales, "SALES") == 7 && base.getWeight(sales, "SALES") == 3);
+		assertTrue(overlay.getWeight(sales, "SALES") == 3);
+		
+		// look-ups on the overlay are traced
+		LookupTracer tracer = new LookupTracer(8, 1);
+		overlay.setTracer(tracer);
+		overlay.getBestMatch(".-.--..--..-...");
+		overlay.getBestMatch(single.encode("SALESMAN").getKey().substring(0, sales.length() + 1));
+		overlay.getBestMatch(sales + "-.-.-.");
+		List<LookupTracer.LookupTrace> traces = tracer.getTraces();
+		assertTrue(traces.size() == 3);
+		assertTrue(traces.get(0).getMatchType() == MatchType.AMBIGUOUS && traces.get(0).getWords().size() == 2);
+		assertTrue(traces.get(0).getDepth() == 15 && traces.get(0).getNodeCount() == 1);
+		assertTrue(traces.get(1).getMatchType() == MatchType.TRUNCATED && traces.get(1).getDepth() > sales.length() + 1);
+		assertTrue(traces.get(2).getMatchType() == MatchType.EXTRA && traces.get(2).getDepth() == sales.length());
+		assertTrue(traces.get(2).getWords().equals(Collections.singletonList("SALES")));
+		overlay.setTracer(null);
+		
+		System.out.println("----- end testOverlay -----");
+	}
+	
+	public void testKeyingDecoder() {
+		System.out.println("----- start testKeyingDecoder -----");
+		
+		final ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		String[] contextWords = {"SALES", "SALESFORCE", "THE", "TEA", "PARIS", "MORSE", "CODE", "I", "IM", "IN"};
+		for (String contextWord : contextWords) {
+			dictionary.put(contextWord);
+		}
+		
+		final List<String> morseWordList = new ArrayList<String>();
+		final List<List<String>> wordsList = new ArrayList<List<String>>();
+		MorseKeyingDecoder decoder = new MorseKeyingDecoder(dictionary, 18, new MorseKeyingDecoder.WordListener() {
+			public void word(String morseWord, MatchResult result) {
+				morseWordList.add(morseWord);
+				wordsList.add(new ArrayList<String>(result.getWords()));
+			}
+		});
+		
+		// keyed twice, speeding up from 18 to 26 wpm, with durations off by up to 10%
+		String[] keyedWords = {"PARIS", "SALES", "SALESFOR", "THEM", "CODE", "I", "MORSE", "TEA", "SALESFORCE", "IN"};
+		int numWords = keyedWords.length * 2;
+		Random random = new Random(7);
+		MatchResult partial = new MatchResult();
+		MatchResult expected = new MatchResult();
+		
+		for (int w = 0; w < numWords; w++) {
+			String keyedWord = keyedWords[w % keyedWords.length];
+			double unit = 1200 / (18 + 8.0 * w / (numWords - 1));
+			
+			for (int c = 0; c < keyedWord.length(); c++) {
+				String code = dictionary.getMorseCodeMap().get(keyedWord.substring(c, c + 1));
+				for (int e = 0; e < code.length(); e++) {
+					double jitter = 0.9 + 0.2 * random.nextDouble();
+					assertTrue(decoder.keyDown((code.charAt(e) == '.' ? 1 : 3) * unit * jitter) == code.charAt(e));
+					
+					// the best match so far is up to date with the element just keyed
+					String prefix = decoder.getPartialMorseWord();
+					decoder.getPartialMatch(partial);
+					dictionary.getBestMatch(prefix, expected);
+					assertTrue(partial.getMatchType() == expected.getMatchType());
+					assertTrue(partial.getWords().equals(expected.getWords()));
+					
+					if (e < code.length() - 1) {
+						assertTrue(decoder.keyUp(unit * jitter) == MorseKeyingDecoder.Gap.ELEMENT);
+					}
+				}
+				if (c < keyedWord.length() - 1) {
+					assertTrue(decoder.keyUp(3 * unit * (0.9 + 0.2 * random.nextDouble())) == MorseKeyingDecoder.Gap.LETTER);
+				}
+			}
+			
+			if (w < numWords - 1) {
+				assertTrue(decoder.keyUp(7 * unit * (0.9 + 0.2 * random.nextDouble())) == MorseKeyingDecoder.Gap.WORD);
+			}
+		}
+		decoder.flush();
+		decoder.flush();
+		
+		assertTrue(morseWordList.size() == numWords);
+		for (int w = 0; w < numWords; w++) {
+			String morseWord = dictionary.encode(keyedWords[w % keyedWords.length]).getKey();
+			assertTrue(morseWordList.get(w).equals(morseWord));
+			assertTrue(wordsList.get(w).equals(dictionary.getBestMatch(morseWord, expected).getWords()));
+		}
+		assertTrue(wordsList.get(1).equals(Collections.singletonList("SALES")));
+		assertTrue(wordsList.get(2).equals(Collections.singletonList("SALESFORCE")));
+		assertTrue(wordsList.get(3).equals(Collections.singletonList("THE")));
+		
+		// the speed is tracked
+		assertTrue(Math.abs(decoder.getWpm() - 26) < 3);
+		
+		// a step to 8 wpm, below half the initial speed, then to 30 wpm; words of dots only cannot
+		// tell the speed, but the unit must not run away on them, and the first dash catches up
+		morseWordList.clear();
+		decoder = new MorseKeyingDecoder(dictionary, 20, new MorseKeyingDecoder.WordListener() {
+			public void word(String morseWord, MatchResult result) {
+				morseWordList.add(morseWord);
+			}
+		});
+		String[] steppedWords = {"SHE", "IS", "HIS", "TEA", "EAT", "PARIS", "CODE", "THE"};
+		double[] wpms = {8, 30};
+		
+		for (double wpm : wpms) {
+			double unit = 1200 / wpm;
+			for (String keyedWord : steppedWords) {
+				for (int c = 0; c < keyedWord.length(); c++) {
+					String code = dictionary.getMorseCodeMap().get(keyedWord.substring(c, c + 1));
+					for (int e = 0; e < code.length(); e++) {
+						decoder.keyDown((code.charAt(e) == '.' ? 1 : 3) * unit * (0.9 + 0.2 * random.nextDouble()));
+						decoder.keyUp((e < code.length() - 1 ? 1 : c < keyedWord.length() - 1 ? 3 : 7) * unit);
+					}
+				}
+				if (wpm == 8 && keyedWord.equals("HIS")) {
+					assertTrue(decoder.getUnit() > 45);
+				}
+			}
+			decoder.flush();
+			
+			assertTrue(Math.abs(decoder.getWpm() - wpm) < wpm / 10);
+			int size = morseWordList.size();
+			for (int w = 1; w <= 5; w++) {
+				String keyedWord = steppedWords[steppedWords.length - w];
+				assertTrue(morseWordList.get(size - w).equals(dictionary.encode(keyedWord).getKey()));
+			}
+		}
+		
+		System.out.println("----- end testKeyingDecoder -----");
+	}
+	
+	public void testBeamSearch() {
+		System.out.println("----- start testBeamSearch -----");
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		dictionary.put("SALES");
+		dictionary.put("SALESFORCE");
+		dictionary.put("THE");
+		String im = dictionary.encode("IM").getKey();
+		String in = dictionary.encode("IN").getKey();
+		dictionary.put(im, "IM", 10);
+		dictionary.put(in, "IN", 1000);
+		
+		ContextWordBeamSearch beam = new ContextWordBeamSearch(dictionary);
+		String sales = dictionary.encode("SALES").getKey();
+		String salesf = dictionary.encode("SALESF").getKey();
+		
+		// exact match costs nothing
+		List<ContextWordBeamSearch.Candidate> candidateList = beam.search(sales);
+		assertTrue(candidateList.get(0).getContextWord().equals("SALES"));
+		assertTrue(candidateList.get(0).getCost() == 0);
+		
+		// dropping 4 elements is cheaper than adding 11, unlike the forward scan of getBestMatch()
+		assertTrue(dictionary.getBestMatch(salesf).contains("SALESFORCE?"));
+		candidateList = beam.search(salesf);
+		assertTrue(candidateList.get(0).getContextWord().equals("SALES"));
+		assertTrue(candidateList.get(0).getDropped() == 4 && candidateList.get(0).getAdded() == 0);
+		assertTrue(candidateList.get(1).getContextWord().equals("SALESFORCE"));
+		assertTrue(candidateList.get(1).getDropped() == 0 && candidateList.get(1).getAdded() == 11);
+		
+		beam.setCosts(3, 1, 0);
+		assertTrue(beam.search(salesf).get(0).getContextWord().equals("SALESFORCE"));
+		
+		// an element appended is dropped
+		candidateList = beam.search(sales + "-");
+		assertTrue(candidateList.get(0).getContextWord().equals("SALES") && candidateList.get(0).getDropped() == 1);
+		
+		// weight orders candidates of the same cost, or takes cost off
+		beam.setCosts(1, 1, 0);
+		candidateList = beam.search("..");
+		assertTrue(candidateList.get(0).getContextWord().equals("IN") && candidateList.get(1).getContextWord().equals("IM"));
+		assertTrue(candidateList.get(0).getCost() == candidateList.get(1).getCost());
+		candidateList = beam.search(im + ".");
+		assertTrue(candidateList.get(0).getContextWord().equals("IM"));
+		beam.setCosts(1, 1, 1);
+		candidateList = beam.search(im + ".");
+		assertTrue(candidateList.get(0).getContextWord().equals("IN") && candidateList.get(0).getDropped() == 2 && candidateList.get(0).getAdded() == 1);
+		assertTrue(candidateList.get(0).getWeight() == 1000);
+		
+		// no node is reached twice, by adding back an element dropped
+		beam.setCosts(1, 1, 0);
+		beam.setBeamWidth(1024);
+		beam.setMaxResults(100);
+		candidateList = beam.search(dictionary.encode("SALESFORCE").getKey() + ".-");
+		assertTrue(candidateList.size() == 4 && candidateList.get(3).getDropped() == 28);
+		assertTrue(beam.getNodesVisited() <= ContextWordTrieStats.collect(dictionary, 0).getNodeCount());
+		beam.setBeamWidth(16);
+		beam.setMaxResults(4);
+		
+		// nodes visited are bounded by the budget
+		beam.setMaxNodes(6);
+		candidateList = beam.search(dictionary.encode("SALESFORCEX").getKey());
+		assertTrue(beam.getNodesVisited() <= 6);
+		beam.setMaxNodes(1024);
+		
+		// a narrow beam keeps only the longest prefix, and misses the cheaper word
+		beam.setBeamWidth(1);
+		beam.setMaxResults(1);
+		candidateList = beam.search(salesf);
+		assertTrue(candidateList.size() == 1 && candidateList.get(0).getContextWord().equals("SALESFORCE"));
+		
+		assertTrue(beam.search("").isEmpty());
+		
+		System.out.println("----- end testBeamSearch -----");
+	}
+	
+	public void testUnknownElement() {
+		System.out.println("----- start testUnknownElement -----");
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		String[] contextWords = {"SALES", "SALESFORCE", "IM", "IN", "IT", "THE", "TEA", "EAT", "PARIS"};
+		for (String contextWord : contextWords) {
+			dictionary.put(contextWord);
+		}
+		String im = dictionary.encode("IM").getKey();
+		String sales = dictionary.encode("SALES").getKey();
+		
+		// both branches match perfectly
+		assertTrue(dictionary.getBestMatch(im.substring(0, 3) + "?").equals(new HashSet<String>(Arrays.asList("IM!", "IN!"))));
+		
+		LookupStatus status = new LookupStatus();
+		Set<String> wordSet = dictionary.getBestMatch(im.substring(0, 3) + "?", status);
+		assertTrue(status.getMatchType() == MatchType.AMBIGUOUS && wordSet.size() == 2);
+		
+		// only one branch is in the trie
+		assertTrue(dictionary.getBestMatch("?" + sales.substring(1)).equals(Collections.singleton("SALES")));
+		
+		long numNodes = ContextWordTrieStats.collect(dictionary, 0).getNodeCount();
+		
+		// each unknown element replaced by a dot and a dash, looked up one by one
+		Random random = new Random(11);
+		MatchResult result = new MatchResult();
+		for (String contextWord : contextWords) {
+			String morseWord = dictionary.encode(contextWord).getKey();
+			for (int trial = 0; trial < 8; trial++) {
+				char[] pattern = morseWord.toCharArray();
+				for (int i = 0; i < pattern.length; i++) {
+					if (random.nextInt(3) == 0) {
+						pattern[i] = '?';
+					}
+				}
+				
+				List<Integer> unknownList = new ArrayList<Integer>();
+				for (int i = 0; i < pattern.length; i++) {
+					if (pattern[i] == '?') {
+						unknownList.add(i);
+					}
+				}
+				
+				Set<String> exactSet = new HashSet<String>();
+				int bestLength = Integer.MAX_VALUE;
+				int numWords = 0;
+				for (int bits = 0; bits < 1 << unknownList.size(); bits++) {
+					char[] variant = pattern.clone();
+					for (int b = 0; b < unknownList.size(); b++) {
+						variant[unknownList.get(b)] = (bits & (1 << b)) == 0 ? '.' : '-';
+					}
+					
+					ContextWordTrie trie = dictionary.getSubTrie(new String(variant));
+					if (trie == null || trie.getValueSet().isEmpty()) {
+						continue;
+					}
+					numWords += trie.getValueSet().size();
+					for (String word : trie.getValueSet()) {
+						if (word.length() < bestLength) {
+							exactSet.clear();
+							bestLength = word.length();
+						}
+						if (word.length() == bestLength) {
+							exactSet.add(word);
+						}
+					}
+				}
+				
+				dictionary.getBestMatch(new String(pattern), result);
+				assertTrue(result.isPerfectMatch());
+				assertTrue(new HashSet<String>(result.getWords()).equals(exactSet));
+				assertTrue(result.getMatchType() == (numWords > 1 ? MatchType.AMBIGUOUS : MatchType.EXACT));
+				
+				// one pass, not one look-up per variant
+				assertTrue(result.getNodesVisited() <= numNodes);
+			}
+		}
+		
+		// truncated and extra elements
+		assertTrue(dictionary.getBestMatch(sales + "?").equals(Collections.singleton("SALESFORCE?")));
+		assertTrue(dictionary.getBestMatch(sales + "-?").equals(Collections.singleton("SALES?")));
+		dictionary.getBestMatch("??", result);
+		assertTrue(result.getMatchType() == MatchType.TRUNCATED && result.isEmpty() == false);
+		assertTrue(new ContextWordFinder().getDictionary().getBestMatch("??").isEmpty());
+		
+		// a cursor, and an overlay with half of the words in each layer, walk unknown elements as
+		// the dictionary does, for every prefix and with elements appended
+		ContextWordTrie half = new ContextWordFinder().getDictionary();
+		for (int i = 0; i < contextWords.length; i += 2) {
+			half.put(contextWords[i]);
+		}
+		OverlayContextWordTrie overlay = new OverlayContextWordTrie(half);
+		for (int i = 1; i < contextWords.length; i += 2) {
+			overlay.put(contextWords[i]);
+		}
+		
+		ContextWordCursor cursor = new ContextWordCursor(dictionary);
+		MatchResult expected = new MatchResult();
+		for (String contextWord : contextWords) {
+			String morseWord = dictionary.encode(contextWord).getKey();
+			for (int trial = 0; trial < 8; trial++) {
+				StringBuilder pattern = new StringBuilder(morseWord);
+				for (int i = 0; i < pattern.length(); i++) {
+					if (random.nextInt(3) == 0) {
+						pattern.setCharAt(i, '?');
+					}
+				}
+				pattern.append(trial % 2 == 0 ? "?" : "-.?-");
+				
+				cursor.reset();
+				for (int i = 0; i < pattern.length(); i++) {
+					cursor.advance(pattern.charAt(i));
+					String prefix = pattern.substring(0, i + 1);
+					dictionary.getBestMatch(prefix, expected);
+					
+					cursor.getBestMatch(result);
+					assertTrue(result.getMatchType() == expected.getMatchType());
+					assertTrue(new HashSet<String>(result.getWords()).equals(new HashSet<String>(expected.getWords())));
+					
+					overlay.getBestMatch(prefix, result);
+					assertTrue(result.getMatchType() == expected.getMatchType());
+					assertTrue(new HashSet<String>(result.getWords()).equals(new HashSet<String>(expected.getWords())));
+				}
+			}
+		}
+		
+		System.out.println("----- end testUnknownElement -----");
+	}
+	
+	public void testSuffixIndex() {
+		System.out.println("----- start testSuffixIndex -----");
+		
+		ContextWordTrie dictionary = new ContextWordFinder().getDictionary();
+		String[] contextWords = {"SALES", "SALESFORCE", "FORCE", "IM", "IN", "IT", "THE", "TEA", "EAT", "PARIS", "MORSE", "CODE"};
+		for (int i = 0; i < 6; i++) {
+			dictionary.put(contextWords[i]);
+		}
+		
+		// words already in the dictionary and words put through the index
+		MorseSuffixIndex index = new MorseSuffixIndex(dictionary);
+		for (int i = 6; i < contextWords.length; i++) {
+			index.put(contextWords[i]);
+		}
+		assertTrue(dictionary.getBestMatch(dictionary.encode("PARIS").getKey()).contains("PARIS"));
+		
+		Map<String, String> morseMap = new HashMap<String, String>();
+		for (String contextWord : contextWords) {
+			morseMap.put(contextWord, dictionary.encode(contextWord).getKey());
+		}
+		
+		// every part of every morse word, against all the words
+		for (int round = 0; round < 2; round++) {
+			for (String morseWord : new HashSet<String>(morseMap.values())) {
+				for (int i = 0; i < morseWord.length(); i++) {
+					for (int j = i + 1; j <= morseWord.length(); j++) {
+						String part = morseWord.substring(i, j);
+						Set<String> endSet = new HashSet<String>();
+						Set<String> containSet = new HashSet<String>();
+						for (Map.Entry<String, String> entry : morseMap.entrySet()) {
+							if (entry.getValue().endsWith(part)) {
+								endSet.add(entry.getKey());
+							}
+							if (entry.getValue().contains(part)) {
+								containSet.add(entry.getKey());
+							}
+						}
+						assertTrue(index.endsWith(part).equals(endSet));
+						assertTrue(index.contains(part, Integer.MAX_VALUE).equals(containSet));
+					}
+				}
+			}
+			
+			// removed from both the dictionary and the index, and checked again
+			if (round == 0) {
+				assertTrue(index.remove("SALES"));
+				assertTrue(index.remove("SALES") == false);
+				morseMap.remove("SALES");
+				assertTrue(dictionary.getBestMatch(dictionary.encode("SALES").getKey()).contains("SALES") == false);
+			}
+		}
+		
+		// reception started in the middle of SALESFORCE
+		String salesforce = dictionary.encode("SALESFORCE").getKey();
+		assertTrue(index.endsWith(salesforce.substring(5)).equals(Collections.singleton("SALESFORCE")));
+		assertTrue(index.getBestEndsWith(dictionary.encode("RCE").getKey()).equals(Collections.singleton("FORCE")));
+		assertTrue(index.contains(dictionary.encode("ORC").getKey(), 1).size() == 1);
+		assertTrue(index.endsWith("").isEmpty() && index.contains("", 10).isEmpty());
+		assertTrue(index.endsWith("------------").isEmpty());
+		
+		System.out.println("----- end testSuffixIndex -----");
+	}
 }
@@ -0,0 +1,242 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Look up the best matched context words asynchronously.
+ *
+ * Look-ups run on an executor, and at most a fixed number of them are handed to the executor
+ * at once. No method blocks the caller. When that limit is reached, {@link #lookup(String)}
+ * returns its future at once and keeps the look-up waiting here, and a look-up which finishes
+ * hands its slot to the oldest waiting one, so bursts do not pile up in the executor queue.
+ * At most a fixed number of look-ups wait; when they are all taken, {@link #lookup(String)}
+ * fails its future with RejectedExecutionException, so overload is pushed back to the caller
+ * instead of growing memory. {@link #tryLookup(String)} fails the future as soon as the
+ * concurrency limit is reached, for callers which would rather shed load than wait.
+ *
+ * Look-ups do not change the dictionary, so they can run at the same time, but the dictionary
+ * should not be changed while look-ups are running.
+ *
+ */
+public class AsyncContextWordLookup {
+	private ContextWordTrie dictionary;
+
+	private Executor executor;
+
+	/**
+	 * Executor created here and shut down by {@link #shutdown()}, or null
+	 */
+	private ExecutorService ownExecutor;
+
+	/**
+	 * One permit per look-up handed to the executor
+	 */
+	private Semaphore permits;
+
+	/**
+	 * Look-ups waiting for a permit, oldest first
+	 */
+	private BlockingQueue<Lookup> pending;
+
+	private int maxConcurrent;
+	private int queueCapacity;
+
+	/**
+	 * Run look-ups on a pool of as many threads as the concurrency limit.
+	 *
+	 * @param dictionary Context word trie
+	 * @param maxConcurrent Largest number of look-ups queued or running at once
+	 * @param queueCapacity Largest number of look-ups waiting for a slot
+	 */
+	public AsyncContextWordLookup(ContextWordTrie dictionary, int maxConcurrent, int queueCapacity) {
+		this(dictionary, Executors.newFixedThreadPool(checkLimit(maxConcurrent)), maxConcurrent, queueCapacity);
+		this.ownExecutor = (ExecutorService) executor;
+	}
+
+	/**
+	 * @param dictionary Context word trie
+	 * @param executor Executor running the look-ups
+	 * @param maxConcurrent Largest number of look-ups queued or running at once
+	 * @param queueCapacity Largest number of look-ups waiting for a slot
+	 */
+	public AsyncContextWordLookup(ContextWordTrie dictionary, Executor executor, int maxConcurrent, int queueCapacity) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+		}
+		this.dictionary = dictionary;
+		this.executor = executor;
+		this.maxConcurrent = checkLimit(maxConcurrent);
+		this.queueCapacity = queueCapacity;
+		this.permits = new Semaphore(maxConcurrent);
+		this.pending = new ArrayBlockingQueue<Lookup>(queueCapacity);
+	}
+
+	/**
+	 * @return The concurrency limit, checked before an executor is created for it
+	 */
+	private static int checkLimit(int maxConcurrent) {
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("Concurrency limit must be positive: " + maxConcurrent);
+		}
+		return maxConcurrent;
+	}
+
+	/**
+	 * Look up the morse word, as soon as a slot is free if the limit is reached.
+	 *
+	 * @param morseWord Morse word
+	 * @return Future of the set of best matched context words, as {@link ContextWordTrie#getBestMatch(String)},
+	 * failed with RejectedExecutionException if the queue of waiting look-ups is full
+	 */
+	public CompletableFuture<Set<String>> lookup(String morseWord) {
+		Lookup lookup = new Lookup(morseWord);
+		if (pending.offer(lookup) == false) {
+			lookup.future.completeExceptionally(new RejectedExecutionException(
+					"Too many look-ups waiting: " + queueCapacity));
+			return lookup.future;
+		}
+		startPending();
+		return lookup.future;
+	}
+
+	/**
+	 * Look up the morse word if the limit is not reached.
+	 *
+	 * @param morseWord Morse word
+	 * @return Future of the set of best matched context words, failed with
+	 * RejectedExecutionException if the limit is reached
+	 */
+	public CompletableFuture<Set<String>> tryLookup(String morseWord) {
+		if (permits.tryAcquire() == false) {
+			CompletableFuture<Set<String>> future = new CompletableFuture<Set<String>>();
+			future.completeExceptionally(new RejectedExecutionException(
+					"Too many look-ups in progress: " + maxConcurrent));
+			return future;
+		}
+
+		Lookup lookup = new Lookup(morseWord);
+		submit(lookup);
+		return lookup.future;
+	}
+
+	/**
+	 * Look up the morse words, each as soon as a slot is free.
+	 *
+	 * @param morseWordList List of morse words
+	 * @return Future of the list of sets of best matched context words, in the order of the morse words,
+	 * failed if a look-up is rejected because the queue of waiting look-ups is full
+	 */
+	public CompletableFuture<List<Set<String>>> lookupAll(List<String> morseWordList) {
+		final List<CompletableFuture<Set<String>>> futureList = new ArrayList<CompletableFuture<Set<String>>>(morseWordList.size());
+
+		for (String morseWord : morseWordList) {
+			futureList.add(lookup(morseWord.trim()));
+		}
+
+		CompletableFuture<Void> all = CompletableFuture.allOf(futureList.toArray(new CompletableFuture<?>[futureList.size()]));
+		return all.thenApply(new Function<Void, List<Set<String>>>() {
+			public List<Set<String>> apply(Void none) {
+				List<Set<String>> resultList = new ArrayList<Set<String>>(futureList.size());
+				for (CompletableFuture<Set<String>> future : futureList) {
+					resultList.add(future.join());
+				}
+				return resultList;
+			}
+		});
+	}
+
+	/**
+	 * Look-up with its future
+	 */
+	private static class Lookup {
+		private String morseWord;
+		private CompletableFuture<Set<String>> future = new CompletableFuture<Set<String>>();
+
+		Lookup(String morseWord) {
+			this.morseWord = morseWord;
+		}
+	}
+
+	/**
+	 * Hand waiting look-ups to the executor while permits are free. It is called after a
+	 * look-up is queued and after a permit is released, so no look-up is left waiting while a
+	 * permit is free.
+	 */
+	private void startPending() {
+		while (pending.isEmpty() == false && permits.tryAcquire()) {
+			Lookup lookup = pending.poll();
+			if (lookup == null) {
+				// taken by another thread
+				permits.release();
+				continue;
+			}
+			submit(lookup);
+		}
+	}
+
+	/**
+	 * Run the look-up holding a permit, which is released when it finishes or is rejected by
+	 * the executor.
+	 */
+	private void submit(final Lookup lookup) {
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						lookup.future.complete(dictionary.getBestMatch(lookup.morseWord));
+					} catch (Throwable e) {
+						lookup.future.completeExceptionally(e);
+					} finally {
+						permits.release();
+						startPending();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			lookup.future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * @return Number of look-ups which can be started without waiting
+	 */
+	public int getAvailableSlots() {
+		return permits.availablePermits();
+	}
+
+	/**
+	 * @return Number of look-ups waiting for a free slot
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	/**
+	 * Shut down the executor if it was created here. Look-ups already started finish.
+	 */
+	public void shutdown() {
+		if (ownExecutor != null) {
+			ownExecutor.shutdown();
+		}
+	}
+}
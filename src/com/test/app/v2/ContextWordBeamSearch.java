@@ -0,0 +1,315 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import com.test.util.trie.v2.Trie;
+
+/**
+ * Look up context words by a bounded beam search, which weighs dropping trailing elements of
+ * the morse word against adding elements to complete it.
+ *
+ * A hypothesis drops the last d elements of the morse word, which leaves a prefix found in the
+ * trie, and then adds a elements below the node of the prefix. A context word stored in the
+ * node reached costs
+ *
+ * 	d * drop cost + a * add cost - weight scale * ln(1 + weight)
+ *
+ * and the words of the lowest cost are the best. An exact match costs nothing, the truncated
+ * matches of {@link ContextWordTrie#getBestMatch(String)} only add elements, and its extra
+ * matches only drop them; the search also compares them with each other and with dropping
+ * then adding.
+ *
+ * Hypotheses are expanded one added element at a time, for all prefixes together, and only
+ * the beam width cheapest hypotheses of each level are kept. The first element added after a
+ * drop is never the element dropped, as that node belongs to the longer prefix, so no node is
+ * reached by two hypotheses. The search stops when no kept
+ * hypothesis can beat the words found, or when the node budget is spent, so no look-up visits
+ * more nodes than the budget. Weights of words not reached yet cannot be known, so a level is
+ * cut off once it costs more than the words found plus the bonus of the heaviest word seen.
+ *
+ * A search object is not thread safe, but the dictionary is only read.
+ *
+ */
+public class ContextWordBeamSearch {
+	private ContextWordTrie dictionary;
+
+	private int beamWidth = 16;
+	private int maxNodes = 1024;
+	private int maxResults = 4;
+	private double dropCost = 1.0;
+	private double addCost = 1.0;
+	private double weightScale = 0;
+
+	/**
+	 * Number of nodes visited by the last search
+	 */
+	private int nodesVisited;
+
+	/**
+	 * Hypothesis kept in the beam
+	 */
+	private static class Hypothesis {
+		private ContextWordTrie trie;
+		private int dropped;
+		private int added;
+		private double cost;
+
+		Hypothesis(ContextWordTrie trie, int dropped, int added, double cost) {
+			this.trie = trie;
+			this.dropped = dropped;
+			this.added = added;
+			this.cost = cost;
+		}
+	}
+
+	private static Comparator<Hypothesis> HypothesisComparator = new Comparator<Hypothesis>() {
+		public int compare(Hypothesis h1, Hypothesis h2) {
+			return Double.compare(h1.cost, h2.cost);
+		}
+	};
+
+	private static Comparator<Candidate> CandidateComparator = new Comparator<Candidate>() {
+		public int compare(Candidate c1, Candidate c2) {
+			int diff = Double.compare(c1.cost, c2.cost);
+			if (diff == 0) {
+				diff = Long.compare(c2.weight, c1.weight);
+			}
+			if (diff == 0) {
+				diff = c1.contextWord.length() - c2.contextWord.length();
+			}
+			if (diff == 0) {
+				diff = c1.contextWord.compareTo(c2.contextWord);
+			}
+			return diff;
+		}
+	};
+
+	private static Comparator<Candidate> WorstFirstComparator = new Comparator<Candidate>() {
+		public int compare(Candidate c1, Candidate c2) {
+			return CandidateComparator.compare(c2, c1);
+		}
+	};
+
+	/**
+	 * @param dictionary Context word trie, which must not be changed while it is searched
+	 */
+	public ContextWordBeamSearch(ContextWordTrie dictionary) {
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * @param beamWidth Number of hypotheses kept at each number of added elements
+	 */
+	public void setBeamWidth(int beamWidth) {
+		if (beamWidth < 1) {
+			throw new IllegalArgumentException("Beam width must be positive: " + beamWidth);
+		}
+		this.beamWidth = beamWidth;
+	}
+
+	/**
+	 * @param maxNodes Largest number of nodes a search visits
+	 */
+	public void setMaxNodes(int maxNodes) {
+		if (maxNodes < 1) {
+			throw new IllegalArgumentException("Node budget must be positive: " + maxNodes);
+		}
+		this.maxNodes = maxNodes;
+	}
+
+	/**
+	 * @param maxResults Largest number of candidates returned
+	 */
+	public void setMaxResults(int maxResults) {
+		if (maxResults < 1) {
+			throw new IllegalArgumentException("Number of results must be positive: " + maxResults);
+		}
+		this.maxResults = maxResults;
+	}
+
+	/**
+	 * @param dropCost Cost of each trailing element dropped
+	 * @param addCost Cost of each element added
+	 * @param weightScale Cost taken off per natural logarithm of (1 + weight); 0 to use weight
+	 * only to order candidates of the same cost
+	 */
+	public void setCosts(double dropCost, double addCost, double weightScale) {
+		if (dropCost < 0 || addCost < 0 || weightScale < 0) {
+			throw new IllegalArgumentException("Costs must not be negative");
+		}
+		this.dropCost = dropCost;
+		this.addCost = addCost;
+		this.weightScale = weightScale;
+	}
+
+	/**
+	 * @return Number of nodes visited by the last search
+	 */
+	public int getNodesVisited() {
+		return nodesVisited;
+	}
+
+	/**
+	 * Search the context words which best match the morse word.
+	 *
+	 * @param morseWord Morse word, one morse character per element
+	 * @return Candidates, cheapest first, then heaviest, then shortest
+	 */
+	public List<Candidate> search(CharSequence morseWord) {
+		nodesVisited = 0;
+		Map<String, Candidate> candidateMap = new HashMap<String, Candidate>();
+
+		// the best candidates up to the result limit, the worst of them first
+		PriorityQueue<Candidate> best = new PriorityQueue<Candidate>(maxResults + 1, WorstFirstComparator);
+		List<Hypothesis> level = new ArrayList<Hypothesis>();
+
+		// the prefixes found in the trie, the longest first as it drops the fewest elements
+		ContextWordTrie trie = dictionary;
+		for (int i = 0; i < morseWord.length() && nodesVisited < maxNodes; i++) {
+			trie = trie.getChild(morseWord.charAt(i));
+			if (trie == null) {
+				break;
+			}
+			nodesVisited++;
+			level.add(0, new Hypothesis(trie, morseWord.length() - i - 1, 0, (morseWord.length() - i - 1) * dropCost));
+		}
+
+		// bonus of the heaviest word seen, which a word not reached yet is assumed not to beat
+		double maxBonus = 0;
+		List<Hypothesis> nextLevel = new ArrayList<Hypothesis>();
+
+		while (level.isEmpty() == false) {
+			Collections.sort(level, HypothesisComparator);
+			while (level.size() > beamWidth) {
+				level.remove(level.size() - 1);
+			}
+
+			for (Hypothesis hypothesis : level) {
+				maxBonus = Math.max(maxBonus, addCandidates(hypothesis, candidateMap, best));
+			}
+
+			// the cheapest hypothesis left cannot beat the words found
+			if (best.size() == maxResults && level.get(0).cost + addCost > best.peek().cost + maxBonus) {
+				break;
+			}
+
+			nextLevel.clear();
+			for (Hypothesis hypothesis : level) {
+				// the element dropped leads back to the node of the longer prefix
+				char droppedElement = hypothesis.dropped > 0 && hypothesis.added == 0
+						? morseWord.charAt(morseWord.length() - hypothesis.dropped) : 0;
+
+				for (Trie<String, String> child : hypothesis.trie.getChildren()) {
+					if (nodesVisited == maxNodes) {
+						break;
+					}
+					if (child.getKey().charAt(0) == droppedElement) {
+						continue;
+					}
+					nodesVisited++;
+					nextLevel.add(new Hypothesis((ContextWordTrie) child, hypothesis.dropped, hypothesis.added + 1,
+							hypothesis.cost + addCost));
+				}
+			}
+
+			List<Hypothesis> tmp = level;
+			level = nextLevel;
+			nextLevel = tmp;
+		}
+
+		List<Candidate> candidateList = new ArrayList<Candidate>(best);
+		Collections.sort(candidateList, CandidateComparator);
+		return candidateList;
+	}
+
+	/**
+	 * Add the context words of the node, keeping the cheapest of a word found more than once.
+	 *
+	 * @param best Best candidates up to the result limit, the worst of them first
+	 * @return Largest bonus of the words
+	 */
+	private double addCandidates(Hypothesis hypothesis, Map<String, Candidate> candidateMap, PriorityQueue<Candidate> best) {
+		if (hypothesis.trie.getBestMatchSet() == null) {
+			return 0;
+		}
+
+		double maxBonus = 0;
+		for (String contextWord : hypothesis.trie.getValueSet()) {
+			long weight = hypothesis.trie.getWeight(contextWord);
+			double bonus = weightScale * Math.log1p(Math.max(0, weight));
+			maxBonus = Math.max(maxBonus, bonus);
+
+			Candidate candidate = new Candidate(contextWord, hypothesis.dropped, hypothesis.added, weight,
+					hypothesis.cost - bonus);
+			Candidate old = candidateMap.get(contextWord);
+			if (old == null || CandidateComparator.compare(candidate, old) < 0) {
+				candidateMap.put(contextWord, candidate);
+
+				// a candidate only gets cheaper, so one left out of the best stays out
+				if (old != null) {
+					best.remove(old);
+				}
+				best.add(candidate);
+				if (best.size() > maxResults) {
+					best.poll();
+				}
+			}
+		}
+		return maxBonus;
+	}
+
+	/**
+	 * Context word found by a search, and how it was reached.
+	 */
+	public static class Candidate {
+		private String contextWord;
+		private int dropped;
+		private int added;
+		private long weight;
+		private double cost;
+
+		Candidate(String contextWord, int dropped, int added, long weight, double cost) {
+			this.contextWord = contextWord;
+			this.dropped = dropped;
+			this.added = added;
+			this.weight = weight;
+			this.cost = cost;
+		}
+
+		public String getContextWord() {
+			return contextWord;
+		}
+
+		/**
+		 * @return Number of trailing elements of the morse word dropped
+		 */
+		public int getDropped() {
+			return dropped;
+		}
+
+		/**
+		 * @return Number of elements added after the elements kept
+		 */
+		public int getAdded() {
+			return added;
+		}
+
+		public long getWeight() {
+			return weight;
+		}
+
+		public double getCost() {
+			return cost;
+		}
+
+		public String toString() {
+			return contextWord + " dropped=" + dropped + " added=" + added + " weight=" + weight + " cost=" + cost;
+		}
+	}
+}
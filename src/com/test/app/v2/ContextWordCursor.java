@@ -0,0 +1,168 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.test.util.trie.v2.Trie;
+
+/**
+ * Walk a context word trie one morse element at a time, as the elements arrive.
+ *
+ * Each element moves the cursor one level down, and the deepest nodes with context words are
+ * remembered on the way, as {@link ContextWordTrie#getBestMatch(CharSequence, MatchResult)}
+ * does for a whole morse word. An element "?" moves the cursor down both branches, so it is on
+ * the nodes of all the paths at once. The best match of the elements so far can be taken at
+ * any time, so it is never more than one element behind the input, and is the same as looking
+ * up the elements as one morse word.
+ *
+ * A cursor is not thread safe.
+ *
+ */
+public class ContextWordCursor {
+	private ContextWordTrie dictionary;
+
+	/**
+	 * Nodes of the last element on all paths, empty if the elements are not in the trie
+	 */
+	private List<ContextWordTrie> level = new ArrayList<ContextWordTrie>();
+
+	private List<ContextWordTrie> nextLevel = new ArrayList<ContextWordTrie>();
+
+	/**
+	 * The deepest nodes before the last element which have context words
+	 */
+	private List<ContextWordTrie> ancestors = new ArrayList<ContextWordTrie>();
+
+	/**
+	 * Number of elements given
+	 */
+	private int length;
+
+	/**
+	 * Number of elements found in the trie
+	 */
+	private int matchedLength;
+
+	/**
+	 * @param dictionary Context word trie, which must not be changed while the cursor walks it
+	 */
+	public ContextWordCursor(ContextWordTrie dictionary) {
+		this.dictionary = dictionary;
+		reset();
+	}
+
+	/**
+	 * Go back to the root for the next morse word.
+	 */
+	public void reset() {
+		level.clear();
+		level.add(dictionary);
+		ancestors.clear();
+		length = 0;
+		matchedLength = 0;
+	}
+
+	/**
+	 * Move down by one element.
+	 *
+	 * @param element Morse element, '.' or '-', or '?' for either
+	 * @return False if the elements so far are not in the trie
+	 */
+	public boolean advance(char element) {
+		length++;
+		if (level.isEmpty()) {
+			return false;
+		}
+
+		// the nodes of the previous element are no longer the last
+		if (length > 1 && hasWords(level)) {
+			ancestors.clear();
+			for (int k = 0; k < level.size(); k++) {
+				if (level.get(k).getBestMatchSet() != null) {
+					ancestors.add(level.get(k));
+				}
+			}
+		}
+
+		nextLevel.clear();
+		for (int k = 0; k < level.size(); k++) {
+			if (element == ContextWordTrie.UnknownElement) {
+				for (Trie<String, String> child : level.get(k).getChildren()) {
+					nextLevel.add((ContextWordTrie) child);
+				}
+			} else {
+				ContextWordTrie child = level.get(k).getChild(element);
+				if (child != null) {
+					nextLevel.add(child);
+				}
+			}
+		}
+
+		List<ContextWordTrie> tmp = level;
+		level = nextLevel;
+		nextLevel = tmp;
+
+		if (level.isEmpty()) {
+			return false;
+		}
+		matchedLength = length;
+		return true;
+	}
+
+	/**
+	 * @return Number of elements given since the last reset
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return Number of elements found in the trie
+	 */
+	public int getMatchedLength() {
+		return matchedLength;
+	}
+
+	/**
+	 * @return True if the elements so far are in the trie
+	 */
+	public boolean isOnPath() {
+		return level.isEmpty() == false;
+	}
+
+	/**
+	 * Look up the best matched context words of the elements so far. The cursor is not moved,
+	 * so more elements can follow.
+	 *
+	 * @param result Look-up result, cleared and then filled with the words and the match type
+	 * @return The result
+	 */
+	public MatchResult getBestMatch(MatchResult result) {
+		result.clear();
+
+		// empty morse input
+		if (length == 0) {
+			result.setMatchType(MatchType.NONE);
+			return result;
+		}
+
+		result.setMatchedLength(matchedLength);
+		if (level.isEmpty()) {
+			dictionary.scanBackward(ancestors, result);
+		} else {
+			result.getNodes().addAll(level);
+			dictionary.completeLevel(ancestors, result);
+		}
+		dictionary.addWords(result);
+		return result;
+	}
+
+	private static boolean hasWords(List<ContextWordTrie> level) {
+		for (int k = 0; k < level.size(); k++) {
+			if (level.get(k).getBestMatchSet() != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -3,13 +3,14 @@ package com.test.app.v2;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
 
 /**
  * Find context words, given Morse code (morse) and morse words as input.
@@ -72,74 +73,102 @@ import java.util.StringTokenizer;
  * @author Eugene Tuan
  */
 public class ContextWordFinder {
-	private static String Delimiters = " \t";
 	private static String TabDelimiter = "\t";
+	
+	/**
+	 * Fewest context words worth building up the dictionary on all cores
+	 */
+	private static int ParallelBuildSize = 64 * 1024;
 	public static Map<String, String> MorseCodeMap = new HashMap<String, String>();
 	
 	private ContextWordTrie wordDictionary = new ContextWordTrie(new MorseWordAnalyzer());
 	private List<String> morseWordList = new ArrayList<String>();
+	private ResultWriter consoleWriter;
 
 	public static void inputMorseTable(String path) throws Exception {
 		if (MorseCodeMap.size() != 0) {
 			return;
 		}
 		
+		MorseCodeMap.putAll(readMorseTable(path));
+	}
+	
+	/**
+	 * Read a Morse code table, one tab separated character and code per line, without 
+	 * touching the table shared by default.
+	 * 
+	 * @param path Path of Morse code table file
+	 * @return Character to code map
+	 */
+	public static Map<String, String> readMorseTable(String path) throws Exception {
+		Map<String, String> morseCodeMap = new HashMap<String, String>();
 		BufferedReader reader = new BufferedReader(new FileReader(new File(path)));
-		String line = null;
-        
-		while ((line = reader.readLine()) != null) {
-			String[] tokens = line.split(TabDelimiter);
-			if (tokens != null) {
-				// build up look-up table
-				MorseCodeMap.put(tokens[0], tokens[1]); // character to code map
+		
+		try {
+			String line = null;
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.split(TabDelimiter);
+				if (tokens != null) {
+					// build up look-up table
+					morseCodeMap.put(tokens[0], tokens[1]); // character to code map
+				}
 			}
+		} finally {
+			reader.close();
 		}
-		
-		reader.close();
+		return morseCodeMap;
 	}
 	
+	/**
+	 * Load context words, one per line, and build up the dictionary on all cores if there are 
+	 * many, or on this thread otherwise. 
+	 * 
+	 * @param path Path of context word file
+	 */
 	public void inputContextWords(String path) throws Exception {
-		BufferedReader reader = new BufferedReader(new FileReader(new File(path)));
-		String contextWord = null;
-        
-		while ((contextWord = reader.readLine()) != null) {
-			wordDictionary.put(contextWord);
-		}
-		reader.close();
+		List<String> contextWords = readLines(path);
+		new ContextWordTrieBuilder(buildThreads(contextWords)).build(wordDictionary, contextWords);
+	}
+	
+	/**
+	 * Load context words, one per line, and build up the dictionary on the given number of threads. 
+	 * 
+	 * @param path Path of context word file
+	 * @param numThreads Number of threads, 1 to put the words on this thread
+	 */
+	public void inputContextWords(String path, int numThreads) throws Exception {
+		new ContextWordTrieBuilder(numThreads).build(wordDictionary, readLines(path));
+	}
+	
+	/**
+	 * Load context words which are already sorted, one per line, and put them into the 
+	 * dictionary in the order of the file.
+	 * 
+	 * @param path Path of sorted context word file
+	 */
+	public void inputSortedContextWords(String path) throws Exception {
+		List<String> contextWords = readLines(path);
+		new ContextWordTrieBuilder(buildThreads(contextWords)).buildSorted(wordDictionary, contextWords);
+	}
+	
+	/**
+	 * @return All cores for a large list of context words, or 1 for a small one, which would 
+	 * take less time to put than to start a pool for
+	 */
+	private static int buildThreads(List<String> contextWords) {
+		return contextWords.size() < ParallelBuildSize ? 1 : Runtime.getRuntime().availableProcessors();
+	}
+	
+	private static List<String> readLines(String path) throws Exception {
+		return new MorseInputParser().readLines(path);
 	}
 	
 	public void inputMorseWords(String path) throws Exception {
-		BufferedReader reader = new BufferedReader(new FileReader(new File(path)));
-		String line = null;
-        
-		while ((line = reader.readLine()) != null) {
-			StringTokenizer st = new StringTokenizer(line, Delimiters);
-			while (st.hasMoreTokens()) {
-				morseWordList.add(st.nextToken());
-			}
-		}
-		reader.close();
+		new MorseInputParser().readMorseWords(path, morseWordList);
 	}
 	
 	public void inputAll(String morseContxtWordPath) throws Exception {
-		BufferedReader reader = new BufferedReader(new FileReader(new File(morseContxtWordPath)));
-		String line = null;
-
-		while ((line = reader.readLine()) != null && line.trim().equals("*") == false) {
-			StringTokenizer st = new StringTokenizer(line, Delimiters);
-			MorseCodeMap.put(st.nextToken(), st.nextToken());
-		}
-		
-		while ((line = reader.readLine()) != null && line.trim().equals("*") == false) {
-			wordDictionary.put(line.trim());
-		}
-		
-		while ((line = reader.readLine()) != null && line.trim().equals("*") == false) {
-			StringTokenizer st = new StringTokenizer(line, Delimiters);
-			while (st.hasMoreTokens()) {
-				morseWordList.add(st.nextToken());
-			}
-		}
+		new MorseInputParser().readAll(morseContxtWordPath, MorseCodeMap, wordDictionary, morseWordList);
 	}
 	
 	public ContextWordTrie getDictionary() {
@@ -151,15 +180,34 @@ public class ContextWordFinder {
 	}
 	
 	public void printBestCandidates(List<Set<String>> resultList) {
-		for (Set<String> resultSet : resultList) {
-			printBestCandidates(resultSet);
+		// one writer for all prints, created on the first so a finder used only for its dictionary has no buffer
+		if (consoleWriter == null) {
+			consoleWriter = new ResultWriter(System.out, ResultWriter.Format.PLAIN);
+		}
+		
+		// System.out does not throw, as println() did not
+		try {
+			for (Set<String> resultSet : resultList) {
+				consoleWriter.write(resultSet);
+			}
+			consoleWriter.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
 	}
 	
 	public void printBestCandidates(Set<String> resultSet) {
-		for (String candidateWord : resultSet) {
-			System.out.println(candidateWord);
-		}
+		printBestCandidates(Collections.singletonList(resultSet));
+	}
+	
+	/**
+	 * Look up the morse words loaded and write the results in input order.
+	 * 
+	 * @param writer Result writer, which is flushed but not closed
+	 */
+	public void writeBestCandidates(ResultWriter writer) throws IOException {
+		writer.writeAll(wordDictionary, morseWordList);
+		writer.flush();
 	}
 	
 	public static void main(String[] args) throws Exception {
@@ -0,0 +1,447 @@
+package com.test.app.v2;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.test.util.trie.v2.TrieEntry;
+
+/**
+ * Keep the context words added to or removed from a dictionary at run time, so they survive
+ * a restart.
+ *
+ * 	1. Each change is appended to a log file as one line: its sequence number, "+" or "-", the
+ * 	   morse word, the context word, and the weight if any, separated by tabs. Lines are
+ * 	   buffered, and written and forced to disk together once a group of them is ready, or on
+ * 	   {@link #sync()}.
+ * 	2. A snapshot holds every morse word and context word of the dictionary, after a first line
+ * 	   with the sequence number of the last change it holds. It is written to a temporary file
+ * 	   which then replaces the old snapshot, and the log is emptied. A snapshot is taken on
+ * 	   {@link #snapshot()}, or when the log has as many lines as the snapshot interval, so
+ * 	   recovery never replays more than that.
+ * 	3. On recovery, the snapshot is loaded and the log lines after its sequence number are
+ * 	   replayed. So if a crash comes after the snapshot replaced the old one but before the log
+ * 	   was emptied, the changes are not applied twice. A line which cannot be parsed is skipped
+ * 	   and counted, and a last line cut short by a crash is dropped and cut off the log.
+ *
+ * With a group size above 1, a change returns before it is on disk. It is durable once its
+ * group is full, or on {@link #sync()}, {@link #snapshot()} or {@link #close()}, so a crash
+ * loses at most the last group size - 1 changes. With a group size of 1, every change is on
+ * disk when it returns.
+ *
+ * Changes are synchronized. Look-ups on the dictionary are not, as for the dictionary itself.
+ *
+ */
+public class ContextWordJournal {
+	private static String SnapshotFileName = "snapshot.txt";
+	private static String LogFileName = "journal.log";
+	private static char Separator = '\t';
+	private static char Add = '+';
+	private static char Remove = '-';
+	private static char Header = '#';
+
+	private ContextWordTrie dictionary;
+
+	private File snapshotFile;
+	private File logFile;
+
+	private RandomAccessFile log;
+	private FileChannel logChannel;
+
+	/**
+	 * Lines not written to the log yet
+	 */
+	private StringBuilder pending = new StringBuilder();
+	private int numPending;
+
+	/**
+	 * Number of lines buffered before they are written and forced to disk together
+	 */
+	private int groupSize = 1;
+
+	/**
+	 * Number of log lines which causes a snapshot, or 0 if snapshots are only taken on demand
+	 */
+	private int snapshotInterval;
+
+	/**
+	 * Number of lines in the log
+	 */
+	private int numLogged;
+
+	/**
+	 * Sequence number of the last change
+	 */
+	private long sequence;
+
+	/**
+	 * Number of log lines skipped by recovery because they cannot be parsed
+	 */
+	private int numCorrupt;
+
+	/**
+	 * @param dictionary Context word trie to keep
+	 * @param directory Directory of the snapshot and log files, created if missing
+	 */
+	public ContextWordJournal(ContextWordTrie dictionary, String directory) {
+		this.dictionary = dictionary;
+
+		File dir = new File(directory);
+		dir.mkdirs();
+		this.snapshotFile = new File(dir, SnapshotFileName);
+		this.logFile = new File(dir, LogFileName);
+	}
+
+	/**
+	 * @param groupSize Number of lines written and forced to disk together; 1 forces every change
+	 */
+	public void setGroupSize(int groupSize) {
+		this.groupSize = Math.max(1, groupSize);
+	}
+
+	/**
+	 * @param snapshotInterval Number of log lines which causes a snapshot, or 0 for no automatic snapshot
+	 */
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = Math.max(0, snapshotInterval);
+	}
+
+	/**
+	 * Load the snapshot and replay the log into the dictionary, which should be empty, then open
+	 * the log for appending.
+	 *
+	 * @return Number of log lines
+	 * @throws IllegalStateException if the journal is already recovered and not closed
+	 */
+	public synchronized int recover() throws Exception {
+		if (logChannel != null) {
+			throw new IllegalStateException("Journal is already recovered");
+		}
+
+		sequence = 0;
+		numCorrupt = 0;
+		if (snapshotFile.exists()) {
+			byte[] bytes = Files.readAllBytes(snapshotFile.toPath());
+			replay(bytes, false);
+		}
+
+		log = new RandomAccessFile(logFile, "rw");
+		logChannel = log.getChannel();
+
+		byte[] bytes = new byte[(int) logChannel.size()];
+		log.readFully(bytes);
+		int end = replay(bytes, true);
+
+		// cut off the torn last line
+		if (end < bytes.length) {
+			logChannel.truncate(end);
+			logChannel.force(true);
+		}
+		logChannel.position(end);
+
+		numLogged = count(bytes, end);
+		return numLogged;
+	}
+
+	/**
+	 * Convert the context word to a morse word, put both into the dictionary and log them.
+	 *
+	 * @param contextWord Context word
+	 * @return MorseWordToContextWord object
+	 */
+	public synchronized MorseWordToContextWord put(String contextWord) throws Exception {
+		MorseWordToContextWord mwcc = dictionary.encode(contextWord);
+		put(mwcc.getKey(), mwcc.getValue());
+		return mwcc;
+	}
+
+	public synchronized void put(String morseWord, String contextWord) throws Exception {
+		put(morseWord, contextWord, 0);
+	}
+
+	/**
+	 * Put the morse word and context word into the dictionary and log them.
+	 *
+	 * @param morseWord Morse word
+	 * @param contextWord Context word
+	 * @param weight Weight added to the context word, or 0 for none
+	 */
+	public synchronized void put(String morseWord, String contextWord, long weight) throws Exception {
+		// nothing to walk, such as a blank word
+		if (morseWord.length() == 0) {
+			return;
+		}
+
+		if (weight != 0) {
+			dictionary.put(morseWord, contextWord, weight);
+		} else {
+			dictionary.put(morseWord, contextWord);
+		}
+		append(Add, morseWord, contextWord, weight);
+	}
+
+	/**
+	 * Remove the context word from the dictionary and log the removal.
+	 *
+	 * @param morseWord Morse word
+	 * @param contextWord Context word
+	 * @return True if the context word was in the dictionary
+	 */
+	public synchronized boolean remove(String morseWord, String contextWord) throws Exception {
+		if (dictionary.remove(morseWord, contextWord) == false) {
+			return false;
+		}
+		append(Remove, morseWord, contextWord, 0);
+		return true;
+	}
+
+	private void append(char op, String morseWord, String contextWord, long weight) throws Exception {
+		if (logChannel == null) {
+			throw new IllegalStateException("Journal is not recovered yet");
+		}
+
+		pending.append(++sequence).append(Separator);
+		pending.append(op).append(Separator).append(morseWord).append(Separator).append(contextWord);
+		if (weight != 0) {
+			pending.append(Separator).append(weight);
+		}
+		pending.append('\n');
+
+		if (++numPending >= groupSize) {
+			sync();
+		}
+	}
+
+	/**
+	 * Write the buffered lines to the log and force them to disk.
+	 */
+	public synchronized void sync() throws Exception {
+		if (numPending == 0) {
+			return;
+		}
+
+		write(logChannel, pending);
+		logChannel.force(false);
+
+		numLogged += numPending;
+		pending.setLength(0);
+		numPending = 0;
+
+		if (snapshotInterval > 0 && numLogged >= snapshotInterval) {
+			snapshot();
+		}
+	}
+
+	/**
+	 * Write every morse word and context word of the dictionary to a new snapshot, then empty the log.
+	 */
+	public synchronized void snapshot() throws Exception {
+		// the changes not written yet are in the dictionary, so they go into the snapshot
+		pending.setLength(0);
+		numPending = 0;
+
+		File tmpFile = new File(snapshotFile.getPath() + ".tmp");
+		RandomAccessFile tmp = new RandomAccessFile(tmpFile, "rw");
+
+		try {
+			FileChannel channel = tmp.getChannel();
+			channel.truncate(0);
+
+			// the log lines up to this sequence number are in the snapshot
+			StringBuilder sb = new StringBuilder();
+			sb.append(Header).append(Separator).append(sequence).append('\n');
+			StringBuilder morseWord = new StringBuilder();
+			Iterator<TrieEntry<String, String>> it = dictionary.iterator(new ArrayList<String>());
+
+			while (it.hasNext()) {
+				TrieEntry<String, String> entry = it.next();
+				morseWord.setLength(0);
+				for (String element : entry.getKey()) {
+					morseWord.append(element);
+				}
+
+				sb.append(Add).append(Separator).append(morseWord).append(Separator).append(entry.getValue());
+				long weight = dictionary.getWeight(morseWord.toString(), entry.getValue());
+				if (weight != 0) {
+					sb.append(Separator).append(weight);
+				}
+				sb.append('\n');
+
+				if (sb.length() > 64 * 1024) {
+					write(channel, sb);
+					sb.setLength(0);
+				}
+			}
+
+			write(channel, sb);
+			channel.force(true);
+		} finally {
+			tmp.close();
+		}
+
+		Files.move(tmpFile.toPath(), snapshotFile.toPath(),
+				StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		if (logChannel != null) {
+			logChannel.truncate(0);
+			logChannel.position(0);
+			logChannel.force(true);
+		}
+		numLogged = 0;
+	}
+
+	/**
+	 * Write the buffered lines and close the log.
+	 */
+	public synchronized void close() throws Exception {
+		if (logChannel == null) {
+			return;
+		}
+
+		try {
+			sync();
+		} finally {
+			log.close();
+			log = null;
+			logChannel = null;
+		}
+	}
+
+	/**
+	 * @return Number of lines in the log, not counting the buffered ones
+	 */
+	public synchronized int getLogSize() {
+		return numLogged;
+	}
+
+	/**
+	 * @return Number of log lines skipped by the last recovery because they cannot be parsed
+	 */
+	public synchronized int getCorruptLineCount() {
+		return numCorrupt;
+	}
+
+	private static void write(FileChannel channel, CharSequence lines) throws IOException {
+		ByteBuffer buf = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+	}
+
+	/**
+	 * Apply the lines to the dictionary.
+	 *
+	 * @param bytes Content of snapshot or log file
+	 * @param isLog True if the lines have sequence numbers, and those not after the last change
+	 * applied are skipped
+	 * @return Position after the last complete line
+	 */
+	private int replay(byte[] bytes, boolean isLog) {
+		int start = 0;
+
+		while (start < bytes.length) {
+			int end = start;
+			while (end < bytes.length && bytes[end] != '\n') {
+				end++;
+			}
+
+			// the last line has no end of line if it was cut short
+			if (end == bytes.length) {
+				return start;
+			}
+
+			List<String> fields = split(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+			if (isLog) {
+				long lineSequence = parseSequence(fields.get(0));
+				if (lineSequence < 0) {
+					numCorrupt++;
+				} else if (lineSequence > sequence) {
+					if (apply(fields.subList(1, fields.size()))) {
+						sequence = lineSequence;
+					} else {
+						numCorrupt++;
+					}
+				}
+			} else if (fields.size() == 2 && fields.get(0).equals(String.valueOf(Header))) {
+				sequence = Math.max(0, parseSequence(fields.get(1)));
+			} else {
+				apply(fields);
+			}
+			start = end + 1;
+		}
+		return start;
+	}
+
+	private static List<String> split(String line) {
+		List<String> fields = new ArrayList<String>(5);
+		int start = 0;
+		for (int i = 0; i <= line.length(); i++) {
+			if (i == line.length() || line.charAt(i) == Separator) {
+				fields.add(line.substring(start, i));
+				start = i + 1;
+			}
+		}
+		return fields;
+	}
+
+	/**
+	 * @return Sequence number, or -1 if it cannot be parsed
+	 */
+	private static long parseSequence(String field) {
+		try {
+			return Long.parseLong(field);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * @param fields Fields of a change: "+" or "-", morse word, context word, and weight if any
+	 * @return False if the fields cannot be parsed
+	 */
+	private boolean apply(List<String> fields) {
+		if (fields.size() < 3 || fields.size() > 4 || fields.get(0).length() != 1 || fields.get(1).length() == 0) {
+			return false;
+		}
+
+		String morseWord = fields.get(1);
+		String contextWord = fields.get(2);
+
+		char op = fields.get(0).charAt(0);
+		if (op == Add) {
+			if (fields.size() == 4) {
+				try {
+					dictionary.put(morseWord, contextWord, Long.parseLong(fields.get(3)));
+				} catch (NumberFormatException e) {
+					return false;
+				}
+			} else {
+				dictionary.put(morseWord, contextWord);
+			}
+			return true;
+		}
+		if (op == Remove) {
+			dictionary.remove(morseWord, contextWord);
+			return true;
+		}
+		return false;
+	}
+
+	private static int count(byte[] bytes, int end) {
+		int numLines = 0;
+		for (int i = 0; i < end; i++) {
+			if (bytes[i] == '\n') {
+				numLines++;
+			}
+		}
+		return numLines;
+	}
+}
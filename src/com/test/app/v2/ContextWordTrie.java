@@ -1,8 +1,9 @@
 package com.test.app.v2;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,13 +16,76 @@ import com.test.util.trie.v2.Trie;
  * 
  */
 public class ContextWordTrie extends Trie<String, String> {
-	private static String PerfectMatchAmbiguityIndicator = "!";
-	private static String ImperfectMatchSuffixIndicator = "?";
+	/**
+	 * Element of morse word which may be a dot or a dash
+	 */
+	static char UnknownElement = '?';
 	
-	private static Map<String, String> MorseCodeMap = ContextWordFinder.MorseCodeMap;
+	/**
+	 * What the whole dictionary shares, held by the root only. Other nodes have null, so
+	 * they carry one reference for it instead of a field for each setting.
+	 */
+	private DictionaryContext context;
+	
+	/**
+	 * Unmodifiable view of the context words, or null if there is no context word
+	 */
+	private Set<String> valueView;
+	
+	/**
+	 * Context words with the fewest characters. They are the best answer for a perfect match, 
+	 * and are updated when a context word is added. While all context words have as many 
+	 * characters, this is the value set itself, and no second set is kept.
+	 */
+	private Set<String> bestSet;
+	
+	/**
+	 * Number of characters of the best context words
+	 */
+	private int bestLength;
+	
+	/**
+	 * Unmodifiable view of the best context words, or null if there is no context word. It is 
+	 * the view of the value set while the best set is the value set.
+	 */
+	private Set<String> bestView;
+	
+	/**
+	 * Weight of each context word, such as its frequency in a corpus, or null if no context 
+	 * word has weight
+	 */
+	private Map<String, Long> weightMap;
+	
+	/**
+	 * Settings of a dictionary, shared by the look-ups starting from its root
+	 */
+	private static class DictionaryContext {
+		/**
+		 * Morse code table converting context words to morse words
+		 */
+		private Map<String, String> morseCodeMap;
+		
+		/**
+		 * Tracer of the look-ups, or null if they are not traced
+		 */
+		private volatile LookupTracer tracer;
+		
+		private DictionaryContext(Map<String, String> morseCodeMap) {
+			this.morseCodeMap = morseCodeMap;
+		}
+	}
 	
 	public ContextWordTrie(KeyAnalyzer<String> analyzer) {
+		this(analyzer, ContextWordFinder.MorseCodeMap);
+	}
+
+	/**
+	 * @param analyzer Morse word analyzer
+	 * @param morseCodeMap Morse code table, instead of the one loaded by {@link ContextWordFinder}
+	 */
+	public ContextWordTrie(KeyAnalyzer<String> analyzer, Map<String, String> morseCodeMap) {
 		super(analyzer);
+		this.context = new DictionaryContext(morseCodeMap);
 	}
 
 	public ContextWordTrie(KeyAnalyzer<String> analyzer, String morseChar) {
@@ -37,6 +101,178 @@ public class ContextWordTrie extends Trie<String, String> {
 		return trie;
 	}
 
+	/**
+	 * {@link #setValueSet(Set)}
+	 */
+	public void setValueSet(Set<String> valueSet) {
+		super.setValueSet(new HashSet<String>());
+		valueView = null;
+		bestSet = null;
+		bestView = null;
+		weightMap = null;
+		
+		if (valueSet != null) {
+			for (String contextWord : valueSet) {
+				addValue(contextWord);
+			}
+		}
+	}
+	
+	/**
+	 * Add the context word, and keep the best context words up to date. 
+	 */
+	protected void addValue(String contextWord) {
+		if (valueSet.add(contextWord) == false) {
+			return;
+		}
+		
+		if (valueView == null) {
+			valueView = Collections.unmodifiableSet(valueSet);
+			bestSet = valueSet;
+			bestView = valueView;
+			bestLength = contextWord.length();
+		} else if (contextWord.length() < bestLength) {
+			bestSet = new HashSet<String>(2);
+			bestView = Collections.unmodifiableSet(bestSet);
+			bestLength = contextWord.length();
+			bestSet.add(contextWord);
+		} else if (contextWord.length() > bestLength) {
+			if (bestSet == valueSet) {
+				// the lengths differ from now on, so the best context words get a set of their own
+				bestSet = new HashSet<String>(valueSet);
+				bestSet.remove(contextWord);
+				bestView = Collections.unmodifiableSet(bestSet);
+			}
+		} else if (bestSet != valueSet) {
+			bestSet.add(contextWord);
+		}
+	}
+	
+	/**
+	 * Remove the context word, and keep the best context words up to date.
+	 */
+	protected boolean removeValue(String contextWord) {
+		if (valueSet.remove(contextWord) == false) {
+			return false;
+		}
+		
+		if (weightMap != null) {
+			weightMap.remove(contextWord);
+		}
+		
+		if (valueSet.isEmpty()) {
+			valueView = null;
+			bestSet = null;
+			bestView = null;
+			weightMap = null;
+		} else if (bestSet != valueSet && bestSet.remove(contextWord) && bestSet.isEmpty()) {
+			// the next shortest context words become the best
+			bestSet = null;
+			for (String remaining : valueSet) {
+				if (bestSet == null || remaining.length() < bestLength) {
+					bestSet = new HashSet<String>(2);
+					bestLength = remaining.length();
+				}
+				if (remaining.length() == bestLength) {
+					bestSet.add(remaining);
+				}
+			}
+			shareBestSet();
+		} else if (bestSet != valueSet) {
+			shareBestSet();
+		}
+		return true;
+	}
+	
+	/**
+	 * Wrap the best set, or drop it for the value set if every context word is a best one.
+	 */
+	private void shareBestSet() {
+		if (bestSet.size() == valueSet.size()) {
+			bestSet = valueSet;
+			bestView = valueView;
+		} else {
+			bestView = Collections.unmodifiableSet(bestSet);
+		}
+	}
+	
+	/**
+	 * {@link #compactNode()}
+	 */
+	protected void compactNode() {
+		super.compactNode();
+		
+		// the views must wrap the copied sets
+		if (valueSet != null && valueSet.isEmpty() == false) {
+			valueView = Collections.unmodifiableSet(valueSet);
+			if (bestSet.size() == valueSet.size()) {
+				bestSet = valueSet;
+				bestView = valueView;
+			} else {
+				Set<String> compactSet = new HashSet<String>(capacityFor(bestSet.size()));
+				compactSet.addAll(bestSet);
+				bestSet = compactSet;
+				bestView = Collections.unmodifiableSet(bestSet);
+			}
+		}
+		
+		if (weightMap != null && weightMap.isEmpty() == false) {
+			Map<String, Long> compactMap = new HashMap<String, Long>(capacityFor(weightMap.size()));
+			compactMap.putAll(weightMap);
+			weightMap = compactMap;
+		} else {
+			weightMap = null;
+		}
+	}
+	
+    /**
+     * Estimate the bytes retained by this node alone: the node, its child map, its sets of 
+     * context words and weights, and the context words. See {@link ContextWordTrieStats}.
+     */
+    long estimateNodeSize() {
+    	long size = ContextWordTrieStats.NodeSize;
+    	
+    	// a compacted leaf shares the empty map
+    	if (map instanceof HashMap) {
+    		size += ContextWordTrieStats.estimateHashMapSize(map.size(), 2);
+    	}
+    	
+    	if (valueSet != null) {
+    		size += ContextWordTrieStats.estimateHashSetSize(valueSet.size(), 16);
+    		for (String contextWord : valueSet) {
+    			size += ContextWordTrieStats.estimateStringSize(contextWord);
+    		}
+    	}
+    	if (valueView != null) {
+    		size += ContextWordTrieStats.ViewSize;
+    	}
+    	if (bestSet != null && bestSet != valueSet) {
+    		size += ContextWordTrieStats.estimateHashSetSize(bestSet.size(), 2) + ContextWordTrieStats.ViewSize;
+    	}
+    	if (weightMap != null) {
+    		size += ContextWordTrieStats.estimateHashMapSize(weightMap.size(), 2) + weightMap.size() * ContextWordTrieStats.LongSize;
+    	}
+    	return size;
+    }
+    
+    /**
+     * Trace a sample of the look-ups starting from this trie object.
+     * 
+     * @param tracer Look-up tracer, or null to stop tracing
+     */
+    public synchronized void setTracer(LookupTracer tracer) {
+    	if (context == null) {
+    		// a node looked up as a dictionary of its own
+    		context = new DictionaryContext(ContextWordFinder.MorseCodeMap);
+    	}
+    	context.tracer = tracer;
+    }
+    
+    public LookupTracer getTracer() {
+    	DictionaryContext dictionaryContext = context;
+    	return dictionaryContext == null ? null : dictionaryContext.tracer;
+    }
+    
     /**
      * Convert context word to morse word and put the key and value pair into trie
      * 
@@ -44,15 +280,183 @@ public class ContextWordTrie extends Trie<String, String> {
      * @return mccw MorseWordToContextWord object
      */
     public MorseWordToContextWord put(String contextWord) {
-    	MorseWordToContextWord mccw = ((MorseWordAnalyzer) analyzer).analyze(contextWord, MorseCodeMap);
+    	MorseWordToContextWord mccw = encode(contextWord);
     	put(mccw.getKey(), mccw.getValue());
     	return mccw;
     }
     
+    /**
+     * Convert context word to morse word and remove the context word from trie. Nodes left 
+     * without context words and descendants are pruned.
+     * 
+     * @param contextWord Context word to be removed from trie
+     * @return True if the context word was in trie
+     */
+    public boolean remove(String contextWord) {
+    	MorseWordToContextWord mccw = encode(contextWord);
+    	return remove(mccw.getKey(), mccw.getValue());
+    }
+    
+    /**
+     * Convert context word to morse word without putting it into trie. It can be called by 
+     * several threads at the same time.
+     * 
+     * @param contextWord Context word
+     * @return mccw MorseWordToContextWord object
+     */
+    public MorseWordToContextWord encode(String contextWord) {
+    	return ((MorseWordAnalyzer) analyzer).analyze(contextWord, getMorseCodeMap());
+    }
+    
+    public Map<String, String> getMorseCodeMap() {
+    	DictionaryContext dictionaryContext = context;
+    	return dictionaryContext == null ? ContextWordFinder.MorseCodeMap : dictionaryContext.morseCodeMap;
+    }
+    
+    /**
+     * Put a list of morse word and context word pairs into trie. 
+     * 
+     * The nodes along the morse word put last are kept, so the next morse word only walks down 
+     * from the end of the prefix both words share. Any order is accepted, but when the list is 
+     * sorted by morse word (or the context words are sorted), consecutive words share long 
+     * prefixes and most of the walking is skipped.
+     * 
+     * @param mwccList List of MorseWordToContextWord entries
+     */
+    public void putAllSorted(List<MorseWordToContextWord> mwccList) {
+    	// path.get(i) is the trie object of the first i elements of the previous morse word 
+    	List<Trie<String, String>> path = new ArrayList<Trie<String, String>>();
+    	String previous = "";
+    	path.add(this);
+    	
+    	for (MorseWordToContextWord mwcc : mwccList) {
+    		String morseWord = mwcc.getKey();
+    		
+    		// nothing to walk, such as a blank word
+    		if (morseWord.length() == 0) {
+    			continue;
+    		}
+    		
+    		int common = 0;
+    		int max = Math.min(previous.length(), morseWord.length());
+    		while (common < max && previous.charAt(common) == morseWord.charAt(common)) {
+    			common++;
+    		}
+    		
+    		while (path.size() > common + 1) {
+    			path.remove(path.size() - 1);
+    		}
+    		
+    		ContextWordTrie trie = (ContextWordTrie) path.get(common);
+    		for (int i = common; i < morseWord.length(); i++) {
+    			trie = (ContextWordTrie) trie.getOrCreateChild(MorseWordAnalyzer.element(morseWord.charAt(i)));
+    			path.add(trie);
+    		}
+    		
+    		trie.addValue(mwcc.getValue());
+    		previous = morseWord;
+    	}
+    }
+    
     public void put(String morseWord, String contextWord) {
         super.put(morseWord, contextWord);
     }
     
+    /**
+     * Put the morse word, such as a span of an input buffer, and the context word into trie. 
+     * The morse word is walked character by character, without being copied or analyzed 
+     * into a list of elements.
+     * 
+     * @param morseWord Morse word
+     * @param contextWord Context word
+     */
+    public void put(CharSequence morseWord, String contextWord) {
+    	// nothing to walk, such as a blank word
+    	if (morseWord.length() == 0) {
+    		return;
+    	}
+    	getOrCreateSubTrie(morseWord).addValue(contextWord);
+    }
+    
+    private ContextWordTrie getOrCreateSubTrie(CharSequence morseWord) {
+    	ContextWordTrie trie = this;
+    	for (int i = 0; i < morseWord.length(); i++) {
+    		trie = (ContextWordTrie) trie.getOrCreateChild(MorseWordAnalyzer.element(morseWord.charAt(i)));
+    	}
+    	return trie;
+    }
+    
+    /**
+     * Put the key and value pair into trie, and add weight to the context word.
+     * 
+     * @param morseWord Morse word
+     * @param contextWord Context word
+     * @param weight Weight, such as frequency of the context word in a corpus
+     */
+    public void put(String morseWord, String contextWord, long weight) {
+    	// nothing to walk, such as a blank word
+    	if (morseWord.length() == 0) {
+    		return;
+    	}
+    	
+    	ContextWordTrie trie = getOrCreateSubTrie(morseWord);
+    	trie.addValue(contextWord);
+    	if (trie.weightMap == null) {
+    		trie.weightMap = new HashMap<String, Long>(2);
+    	}
+    	Long oldWeight = trie.weightMap.get(contextWord);
+    	trie.weightMap.put(contextWord, oldWeight == null ? weight : oldWeight + weight);
+    }
+    
+    /**
+     * Get the trie object of the morse word.
+     * 
+     * @param morseWord Morse word
+     * @return Trie object, or null if any prefix of the morse word is not in the trie
+     */
+    public ContextWordTrie getSubTrie(String morseWord) {
+    	ContextWordTrie trie = this;
+    	for (int i = 0; i < morseWord.length() && trie != null; i++) {
+    		trie = (ContextWordTrie) trie.map.get(MorseWordAnalyzer.element(morseWord.charAt(i)));
+    	}
+    	return trie;
+    }
+    
+    /**
+     * @param element Morse character
+     * @return Immediate descendant for the element, or null if it does not exist
+     */
+    ContextWordTrie getChild(char element) {
+    	return (ContextWordTrie) map.get(MorseWordAnalyzer.element(element));
+    }
+    
+    /**
+     * @return Unmodifiable set of the context words with the fewest characters, or null if there 
+     * is no context word
+     */
+    Set<String> getBestMatchSet() {
+    	return bestView;
+    }
+    
+    /**
+     * @param contextWord Context word stored in this trie object
+     * @return Weight of the context word, or 0 if it has no weight
+     */
+    public long getWeight(String contextWord) {
+    	Long weight = weightMap != null ? weightMap.get(contextWord) : null;
+    	return weight != null ? weight : 0;
+    }
+    
+    /**
+     * @param morseWord Morse word
+     * @param contextWord Context word
+     * @return Weight of the context word, or 0 if it has no weight
+     */
+    public long getWeight(String morseWord, String contextWord) {
+    	ContextWordTrie trie = getSubTrie(morseWord);
+    	return trie != null ? trie.getWeight(contextWord) : 0;
+    }
+    
     /**
      * Given a trie, find all shortest traversal paths down to the descendants which have context words.
      * 
@@ -76,129 +480,129 @@ public class ContextWordTrie extends Trie<String, String> {
      *  
      *  The shortest path is only C.
      * 
+     * The descendants are visited level by level, so the first level which has context words 
+     * gives all the shortest paths, and no node below that level is visited. 
+     * 
      * @param trie Trie object is the starting node in finding the paths
      */
     public List<List<String>> findShortestPathToWord(Trie<String, String> trie) {
     	List<List<String>> pathList = new ArrayList<List<String>>();
-    	int minSeqLen = Integer.MAX_VALUE;
+    	List<PathStep> level = new ArrayList<PathStep>();
+    	List<PathStep> nextLevel = new ArrayList<PathStep>();
     	
-    	while (true) {
-    		List<String> path = new ArrayList<String>();
-    		findOnePathToWord(trie, path, true);
+    	for (Trie<String, String> childTrie : trie.getChildren()) {
+    		level.add(new PathStep(childTrie, null));
+    	}
+    	
+    	while (level.isEmpty() == false) {
+    		for (PathStep step : level) {
+    			if (step.trie.getValueSet().isEmpty() == false) {
+    				pathList.add(step.toPath());
+    			}
+    		}
     		
-    		if (path.isEmpty()) {
+    		if (pathList.isEmpty() == false) {
     			break;
     		}
     		
-    		if (path.size() < minSeqLen) {
-    			minSeqLen = path.size();
-    			pathList.clear();
-    			pathList.add(path);
-    		} else if (path.size() == minSeqLen) {
-    			pathList.add(path);
+    		nextLevel.clear();
+    		for (PathStep step : level) {
+    			for (Trie<String, String> childTrie : step.trie.getChildren()) {
+    				nextLevel.add(new PathStep(childTrie, step));
+    			}
     		}
+    		
+    		List<PathStep> tmp = level;
+    		level = nextLevel;
+    		nextLevel = tmp;
     	}
     	
-    	clearVisited(trie);
-    	
     	return pathList;
     }
     
     /**
-     * Given a trie object, find one traversal path down to a descendant node that has 
-     * context word. When visiting a node that has context word, return the path.
-     * 
-     * A trie is marked visited when its descendants are all marked visited, or when the 
-     * descendant trie has context word(s). 
-     * 
-     * @param parentTrie Parent trie object
-     * @param traversalRoot True if the parent trie object passed in the 1st parameter is the starting node 
-     * in finding the path, else false. 
-     * 
-     * @return True if the immediate child node is marked visited, else false.
+     * A visited node in finding the shortest paths, linked to the step it is reached from. 
      */
-	private boolean findOnePathToWord(Trie<String, String> parentTrie, List<String> path, boolean traversalRoot) {
-		List<Trie<String, String>> childTrieList 
-								= new ArrayList<Trie<String, String>>(parentTrie.getChildren());
-
-		if (traversalRoot == false) {
-			path.add(parentTrie.getKey());
+    private static class PathStep {
+    	private Trie<String, String> trie;
+    	private PathStep previous;
+    	
+    	PathStep(Trie<String, String> trie, PathStep previous) {
+    		this.trie = trie;
+    		this.previous = previous;
+    	}
+    	
+    	/**
+    	 * @return Keys of the nodes from the starting node down to this node
+    	 */
+    	List<String> toPath() {
+    		List<String> path = new ArrayList<String>();
+    		for (PathStep step = this; step != null; step = step.previous) {
+    			path.add(step.trie.getKey());
+    		}
+    		Collections.reverse(path);
+    		return path;
+    	}
+    }
+    
+	/**
+	 * Scan forward to find context word that matches the longest prefix of the truncated morse 
+	 * with the fewest extra elements beyond those in morse.
+	 * 
+	 * The descendants are visited level by level. Context words stored in the first level which 
+	 * has any are the ones at the end of the shortest paths found by {@link #findShortestPathToWord(Trie)}.
+	 * 
+	 * @param trie Trie object of the last element of the truncated morse
+	 * @param result Look-up result, which gets the nodes of the first level which has context words
+	 */
+	private void scanForward(ContextWordTrie trie, MatchResult result) {
+		addChildren(trie, result.getNodes());
+		scanLevels(result);
+	}
+	
+	/**
+	 * Scan forward level by level, starting from the level in the nodes of the result.
+	 * 
+	 * @param result Look-up result, which gets the nodes of the first level which has context words
+	 */
+	private void scanLevels(MatchResult result) {
+		List<ContextWordTrie> level = result.getNodes();
+		
+		while (level.isEmpty() == false) {
+			result.addNodesVisited(level.size());
 			
-			if (parentTrie.getValueSet().size() > 0) {
-				parentTrie.setVisited(true);
-				return true;
+			// keep only the nodes which have context words
+			int n = 0;
+			for (int k = 0; k < level.size(); k++) {
+				if (level.get(k).valueView != null) {
+					level.set(n++, level.get(k));
+				}
 			}
-		}
-		
-		if (childTrieList.isEmpty() == false) {
-			int numChildVisited = 0;
 			
-			for (int i = 0; i < childTrieList.size(); i++) {
-				if (childTrieList.get(i).isVisited() == false) {
-					numChildVisited = findOnePathToWord(
-							childTrieList.get(i), path, false) ? ++numChildVisited : numChildVisited;
-					
-					if (traversalRoot == false) {
-						// If all descendants are marked visited, mark this trie visited
-						if (numChildVisited == childTrieList.size()) {
-							parentTrie.setVisited(true);
-						}
-					}
-
-					// return immediately when one path is found
-					return parentTrie.isVisited();
+			if (n > 0) {
+				while (level.size() > n) {
+					level.remove(level.size() - 1);
 				}
-				numChildVisited++;
+				break;
 			}
-			parentTrie.setVisited(true);
-		} else {
-			if (traversalRoot == false) {
-				// no children, mark visited
-				parentTrie.setVisited(true);
+			
+			List<ContextWordTrie> nextLevel = result.getScratch();
+			nextLevel.clear();
+			for (int k = 0; k < level.size(); k++) {
+				addChildren(level.get(k), nextLevel);
 			}
+			
+			result.swapNodes();
+			level = nextLevel;
 		}
-		return parentTrie.isVisited();
+		
+		result.setMatchType(MatchType.TRUNCATED);
 	}
-    
-	/**
-	 * Scan forward to find context word that matches the longest prefix of the truncated morse 
-	 * with the fewest extra elements beyond those in morse.
-	 * 
-	 * @param trie
-	 * @param morseCharList
-	 * @param index
-	 * @param status
-	 * @return
-	 */
-	private Set<String> scanForward(
-					Trie<String, String> trie, 
-					List<String> morseCharList, 
-					int index, 
-					LookupStatus status) {
-    	
-		ContextWordTrie mwTrie = (ContextWordTrie) trie;
-		Set<String> wordSet = null;
-		Set<String> matchSet = new HashSet<String>();
-    	
-    	// get shortest paths to descendants which have context words.
-    	List<List<String>> shortestPathList = findShortestPathToWord(trie);
-    	List<String> extendMorseCharList = new ArrayList<String>();
-    	
-    	index++;
-    	// for each path, match it
-    	for (List<String> path : shortestPathList) {
-    		extendMorseCharList.clear();
-    		extendMorseCharList.addAll(morseCharList);
-    		extendMorseCharList.addAll(path);
-    		
-    		wordSet = mwTrie.get(extendMorseCharList, index, status);
-    		if (wordSet != null) {
-    			matchSet.addAll(wordSet);
-    		}
-    	}
-
-    	status.setPerfectMatch(false);
-    	return matchSet;
+	
+	private static void addChildren(ContextWordTrie trie, List<ContextWordTrie> level) {
+		for (Trie<String, String> childTrie : trie.map.values()) {
+			level.add((ContextWordTrie) childTrie);
+		}
 	}
 	
 	/**
@@ -206,13 +610,33 @@ public class ContextWordTrie extends Trie<String, String> {
 	 * 
 	 * This is called when the input morse word has wrong elements appended.
 
-	 * Because get() is called recursively from root to leaf, simply returning word stored 
-	 * in the nearest ancestor node, which will naturally make the returned word the longest 
-	 * morse prefix of all ancestors.
+	 * Because walk() remembers the deepest ancestor node which has context words while walking 
+	 * from root to leaf, simply returning word stored in that node will naturally make the 
+	 * returned word the longest morse prefix of all ancestors.
 	 * 
 	 */
-	private Set<String> scanBackward(Trie<String, String> trie, LookupStatus status) {
-    	return trie.getValueSet();
+	private void scanBackward(ContextWordTrie trie, MatchResult result) {
+		result.getNodes().clear();
+		
+		// no ancestor has context word
+		if (trie == null) {
+			result.setMatchType(MatchType.NONE);
+			return;
+		}
+		
+		result.getNodes().add(trie);
+		result.setMatchType(MatchType.EXTRA);
+	}
+	
+	/**
+	 * Scan backward from the deepest ancestors of several paths, which are at the same depth.
+	 */
+	void scanBackward(List<ContextWordTrie> ancestors, MatchResult result) {
+		result.getNodes().clear();
+		result.getNodes().addAll(ancestors);
+		
+		// no ancestor has context word
+		result.setMatchType(ancestors.isEmpty() ? MatchType.NONE : MatchType.EXTRA);
 	}
 	
 	/**
@@ -244,102 +668,341 @@ public class ContextWordTrie extends Trie<String, String> {
 	 * 		In this situation, display "SALESFORCE" because it matches the longest prefix of 
 	 * 		the morse for "SALESF".
 	 *
-	 * @param morseCharList List of input morse characters
-	 * @param index Index to the element in the list
-	 * @return Set of matched strings
+	 * The morse elements are walked in a loop from this trie object down to the node of the last
+	 * element. On the way down, the deepest node which has context words is remembered, so 
+	 * scanning backward does not need to unwind a call stack. 
+	 *
+	 * For a perfect match, the best context words precomputed in the node are the answer.
+	 * 
+	 * An element "?" stands for a dot or a dash which could not be read. From the first such 
+	 * element, all the paths are walked together by {@link #walkUnknown}.
+	 *
+	 * @param morseWord Morse word, one morse character per element
+	 * @param result Look-up result, which gets the match type and the nodes whose context words are the best
 	 */
-    private Set<String> get(List<String> morseCharList, int index, LookupStatus status) {
-    	Set<String> matchSet = null;
+    private void walk(CharSequence morseWord, MatchResult result) {
+    	int last = morseWord.length() - 1;
     	
-    	// end of morse input
-    	if (morseCharList.size() == index + 1) {
-            ContextWordTrie trie = (ContextWordTrie) map.get(morseCharList.get(index));
-            
-            // trie is null if the input morse word has wrong elements appended
-            if (trie == null) {
-            	status.setPerfectMatch(false);
-            	return matchSet;
-            }
-            
-            matchSet = trie.getValueSet();
-        	
-        	/*
-        	 * When code runs here, we have reached the end of morse input.
-        	 * 	
-        	 * 	If word set is null, it means 
-        	 * 		1. not be able to find context word for the given morse input.
-        	 * 		2. however, the leaf node in the tree hasn't been reached yet.
-        	 * 		3. need to look forward to match the longest prefix of the truncated 
-        	 * 		   morse input. 
-        	 */
-            if (matchSet == null || matchSet.isEmpty()) {
-            	return scanForward(trie, morseCharList, index, status);
-            }
-        	
-            status.setPerfectMatch(true);
-        } else {
-        	ContextWordTrie trie = (ContextWordTrie) map.get(morseCharList.get(index));
-
-        	/*
-        	 * If trie object is not null, it means it hasn't reached the leaf node of the tree.
-        	 */
-        	if (trie != null) {
-	            matchSet = trie.get(morseCharList, ++index, status);
-	            
-	            if (matchSet == null || matchSet.isEmpty()) {
-	            	return scanBackward(trie, status);
-	            }
-            } else {
-            	// trie is null if the input morse word has wrong elements appended
-            	status.setPerfectMatch(false);
-            }
-        }
-
-    	return matchSet;
+    	// empty morse input
+    	if (last < 0) {
+    		result.setMatchType(MatchType.NONE);
+    		return;
+    	}
+    	
+    	ContextWordTrie trie = this;
+    	
+    	// the deepest node on the matched path, before the end of morse input, which has context words 
+    	ContextWordTrie ancestor = null;
+    	
+    	for (int i = 0; i <= last; i++) {
+    		// both branches are walked from here on
+    		if (morseWord.charAt(i) == UnknownElement) {
+    			walkUnknown(morseWord, i, trie, ancestor, result);
+    			return;
+    		}
+    		
+    		ContextWordTrie child = (ContextWordTrie) trie.map.get(MorseWordAnalyzer.element(morseWord.charAt(i)));
+    		
+    		// child is null if the input morse word has wrong elements appended
+    		if (child == null) {
+    			result.setMatchedLength(i);
+    			scanBackward(ancestor, result);
+    			return;
+    		}
+    		
+    		if (i < last && child.bestView != null) {
+    			ancestor = child;
+    		}
+    		trie = child;
+    	}
+    	result.setMatchedLength(last + 1);
+    	complete(trie, ancestor, result);
     }
     
+    /**
+     * Decide the match once the node of the last element of the morse word is reached.
+     * 
+     * @param trie Trie object of the last element
+     * @param ancestor The deepest node before the last element which has context words, or null
+     * @param result Look-up result, which gets the match type and the nodes whose context words are the best
+     */
+    private void complete(ContextWordTrie trie, ContextWordTrie ancestor, MatchResult result) {
+    	/*
+    	 * When code runs here, we have reached the end of morse input.
+    	 * 	
+    	 * 	If there is no best word, it means 
+    	 * 		1. not be able to find context word for the given morse input.
+    	 * 		2. however, the leaf node in the tree hasn't been reached yet.
+    	 * 		3. need to look forward to match the longest prefix of the truncated 
+    	 * 		   morse input. 
+    	 */
+    	if (trie.bestView == null) {
+    		scanForward(trie, result);
+    		
+    		if (result.getNodes().isEmpty()) {
+    			scanBackward(ancestor, result);
+    		}
+    		return;
+    	}
+    	
+    	/*
+    	 * If multiple context words match morse perfectly, then 
+    	 * the matching words with the fewest characters are the best.
+    	 */
+    	result.getNodes().add(trie);
+    	result.setMatchType(trie.valueSet.size() > 1 ? MatchType.AMBIGUOUS : MatchType.EXACT);
+    }
+    
+    /**
+     * Walk the rest of a morse word which has unknown elements.
+     * 
+     * The nodes of all the morse words the unknown elements can stand for are advanced together, 
+     * one level per element, so each node is visited once however many unknown elements there 
+     * are. Nodes of a level are distinct, as each node is reached by one path only. The match is 
+     * decided as for one morse word, over the nodes of all paths: 
+     * 
+     * 	1. Perfect match: the nodes of the last element which have the shortest context words, and 
+     * 	   it is ambiguous if the nodes together have more than one context word.
+     * 	2. Truncated: the first level below those nodes which has context words.
+     * 	3. Extra: the deepest level, before the end of the morse word, which has context words.
+     * 
+     * @param morseWord Morse word
+     * @param start Index of the first unknown element
+     * @param trie Trie object of the element before it
+     * @param ancestor The deepest node before it which has context words
+     * @param result Look-up result, which gets the match type and the nodes whose context words are the best
+     */
+    private void walkUnknown(CharSequence morseWord, int start, ContextWordTrie trie, ContextWordTrie ancestor, 
+    		MatchResult result) {
+    	int last = morseWord.length() - 1;
+    	int visited = start;
+    	
+    	List<ContextWordTrie> level = result.getNodes();
+    	level.clear();
+    	level.add(trie);
+    	
+    	// the deepest nodes on the matched paths, before the end of morse input, which have context words
+    	List<ContextWordTrie> ancestors = result.getAncestors();
+    	ancestors.clear();
+    	if (ancestor != null) {
+    		ancestors.add(ancestor);
+    	}
+    	
+    	for (int i = start; i <= last; i++) {
+    		char element = morseWord.charAt(i);
+    		List<ContextWordTrie> nextLevel = result.getScratch();
+    		nextLevel.clear();
+    		
+    		for (int k = 0; k < level.size(); k++) {
+    			if (element == UnknownElement) {
+    				addChildren(level.get(k), nextLevel);
+    			} else {
+    				ContextWordTrie child = level.get(k).getChild(element);
+    				if (child != null) {
+    					nextLevel.add(child);
+    				}
+    			}
+    		}
+    		visited += nextLevel.size();
+    		
+    		// no path has the element
+    		if (nextLevel.isEmpty()) {
+    			result.setMatchedLength(i);
+    			result.addNodesVisited(visited - i);
+    			scanBackward(ancestors, result);
+    			return;
+    		}
+    		
+    		result.swapNodes();
+    		level = nextLevel;
+    		
+    		if (i < last && hasWords(level)) {
+    			ancestors.clear();
+    			for (int k = 0; k < level.size(); k++) {
+    				if (level.get(k).bestView != null) {
+    					ancestors.add(level.get(k));
+    				}
+    			}
+    		}
+    	}
+    	result.setMatchedLength(last + 1);
+    	result.addNodesVisited(visited - last - 1);
+    	completeLevel(ancestors, result);
+    }
+    
+    /**
+     * Decide the match once the nodes of the last element of all paths are reached.
+     * 
+     * @param ancestors The deepest nodes before the last element which have context words
+     * @param result Look-up result, whose nodes are those of the last element, and which gets the 
+     * match type and the nodes whose context words are the best
+     */
+    void completeLevel(List<ContextWordTrie> ancestors, MatchResult result) {
+    	List<ContextWordTrie> level = result.getNodes();
+    	
+    	if (hasWords(level) == false) {
+    		List<ContextWordTrie> nextLevel = result.getScratch();
+    		nextLevel.clear();
+    		for (int k = 0; k < level.size(); k++) {
+    			addChildren(level.get(k), nextLevel);
+    		}
+    		result.swapNodes();
+    		scanLevels(result);
+    		
+    		if (result.getNodes().isEmpty()) {
+    			scanBackward(ancestors, result);
+    		}
+    		return;
+    	}
+    	
+    	// keep the nodes which have the shortest context words
+    	int bestLength = Integer.MAX_VALUE;
+    	int numWords = 0;
+    	for (int k = 0; k < level.size(); k++) {
+    		if (level.get(k).bestView != null) {
+    			bestLength = Math.min(bestLength, level.get(k).bestLength);
+    			numWords += level.get(k).valueSet.size();
+    		}
+    	}
+    	
+    	int n = 0;
+    	for (int k = 0; k < level.size(); k++) {
+    		if (level.get(k).bestView != null && level.get(k).bestLength == bestLength) {
+    			level.set(n++, level.get(k));
+    		}
+    	}
+    	while (level.size() > n) {
+    		level.remove(level.size() - 1);
+    	}
+    	
+    	result.setMatchType(numWords > 1 ? MatchType.AMBIGUOUS : MatchType.EXACT);
+    }
+    
+    private static boolean hasWords(List<ContextWordTrie> level) {
+    	for (int k = 0; k < level.size(); k++) {
+    		if (level.get(k).bestView != null) {
+    			return true;
+    		}
+    	}
+    	return false;
+    }
+    
+    /**
+     * Walk the morse word, and record the look-up if the tracer samples it.
+     */
+    private void find(CharSequence morseWord, MatchResult result) {
+    	LookupTracer lookupTracer = getTracer();
+    	if (lookupTracer == null || lookupTracer.sample() == false) {
+    		walk(morseWord, result);
+    		return;
+    	}
+    	
+    	long start = System.nanoTime();
+    	walk(morseWord, result);
+    	lookupTracer.record(this, morseWord, result, System.nanoTime() - start);
+    }
+    
+    /**
+     * Look up the best matched context words without decorating them. How they are matched
+     * is set to the look-up status. 
+     * 
+     * @param morseWord Morse word
+     * @param status Look-up status, which gets the match type
+     * @return Unmodifiable set of the best matched context words
+     */
+    public Set<String> getBestMatch(String morseWord, LookupStatus status) {
+    	// a perfect match needs no result object, unless it is traced
+    	if (getTracer() == null && morseWord.length() > 0) {
+    		ContextWordTrie trie = getSubTrie(morseWord);
+    		if (trie != null && trie.bestView != null) {
+    			status.setMatchType(trie.valueSet.size() > 1 ? MatchType.AMBIGUOUS : MatchType.EXACT);
+    			return trie.bestView;
+    		}
+    	}
+    	
+    	MatchResult result = new MatchResult();
+    	find(morseWord, result);
+    	status.setMatchType(result.getMatchType());
+    	
+    	List<ContextWordTrie> nodes = result.getNodes();
+    	switch (result.getMatchType()) {
+    	case EXACT:
+    	case AMBIGUOUS:
+    		if (nodes.size() == 1) {
+    			return nodes.get(0).bestView;
+    		}
+    		break;
+    	case EXTRA:
+    		if (nodes.size() == 1) {
+    			return nodes.get(0).valueView;
+    		}
+    		break;
+    	case TRUNCATED:
+    		break;
+    	default:
+    		return Collections.emptySet();
+    	}
+    	
+    	// several nodes, of a forward scan or of unknown elements
+    	Set<String> matchSet = new HashSet<String>();
+    	for (ContextWordTrie node : nodes) {
+    		matchSet.addAll(result.isPerfectMatch() ? node.bestSet : node.valueSet);
+    	}
+    	return Collections.unmodifiableSet(matchSet);
+    }
+    
+    /**
+     * Look up the best matched context words into a reusable result, without copying or 
+     * decorating them. Once the result has grown to the size needed, a look-up which ends on 
+     * one node only allocates the iterator of its word set. Words merged from several nodes, of 
+     * a forward scan or of unknown elements, are deduplicated through a hash set, which 
+     * allocates an entry per word.
+     * 
+     * @param morseWord Morse word, one morse character per element
+     * @param result Look-up result, cleared and then filled with the words and the match type
+     * @return The result
+     */
+    public MatchResult getBestMatch(CharSequence morseWord, MatchResult result) {
+    	result.clear();
+    	find(morseWord, result);
+    	addWords(result);
+    	return result;
+    }
+    
+    /**
+     * Fill the result with the context words of the nodes found by a look-up.
+     */
+    void addWords(MatchResult result) {
+    	List<ContextWordTrie> nodes = result.getNodes();
+    	if (nodes.size() == 1) {
+    		for (String contextWord : result.isPerfectMatch() ? nodes.get(0).bestSet : nodes.get(0).valueSet) {
+    			result.addWord(contextWord);
+    		}
+    		return;
+    	}
+    	
+    	// several nodes may have the same word
+    	for (int k = 0; k < nodes.size(); k++) {
+    		ContextWordTrie node = nodes.get(k);
+    		for (String contextWord : result.isPerfectMatch() ? node.bestSet : node.valueSet) {
+    			result.addWordOnce(contextWord);
+    		}
+    	}
+    }
+    
+    /**
+     * Look up the best matched context words. A word is suffixed with "!" if it is one of 
+     * several perfect matches, or with "?" if the match is imperfect.
+     * 
+     * @param morseWord Morse word
+     * @return Set of the best matched context words
+     */
     public Set<String> getBestMatch(String morseWord) {
-    	List<String> morseCharList = analyzer.analyze(morseWord);
     	LookupStatus status = new LookupStatus();
-        Set<String> wordSet = get(morseCharList, 0, status);
+        Set<String> wordSet = getBestMatch(morseWord, status);
         
         // get a defensive copy
-        Set<String> bestSet = new HashSet<String>();
-       	
-        if (status.isPerfectMatch()) {
-        	if (wordSet.size() > 1) {
-	        	/*
-	        	 * If multiple context words match morse perfectly, then 
-	        	 * select the matching word with the fewest characters.
-	        	 */
-	        	int minLen = Integer.MAX_VALUE;
-	        	Iterator<String> it = wordSet.iterator();
-	        	while (it.hasNext()) {
-	        		String contextWord = it.next();
-	        		
-	        		if (contextWord.length() < minLen) {
-	        			minLen = contextWord.length();
-	        		}
-	        	}
-	        	
-	        	it = wordSet.iterator();
-	        	while (it.hasNext()) {
-	        		String contextWord = it.next();	
-	        		if (contextWord.length() == minLen) {
-	        			bestSet.add(contextWord + PerfectMatchAmbiguityIndicator);
-	        		}
-	        	}        	
-        	} else {
-        		bestSet.addAll(wordSet);
-        	}
-        } else {
-        	Iterator<String> it = wordSet.iterator();
-        	
-        	while (it.hasNext()) {
-    			bestSet.add(it.next() + ImperfectMatchSuffixIndicator);
-        	}
-        }
-        return bestSet;
+        return status.getMatchType().decorate(wordSet);
     }
     
     public List<Set<String>> getBestMatches(List<String> morseWordList) {
@@ -0,0 +1,163 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Build up the context word trie from a large list of context words on several threads.
+ *
+ * 	1. Context words are converted to morse words in parallel, each thread converting one slice
+ * 	   of the list.
+ * 	2. Morse words are partitioned by their leading elements, and each partition is put into
+ * 	   its own trie on its own thread. Partitions do not share the nodes below the leading
+ * 	   elements, so no locking is needed.
+ * 	3. The partition tries are merged into the dictionary. Since they only overlap in the
+ * 	   leading elements, merging mostly attaches their descendants.
+ *
+ * With one thread, the words are put on the calling thread and no pool is created.
+ *
+ */
+public class ContextWordTrieBuilder {
+	/**
+	 * Number of leading morse elements deciding the partition of a morse word
+	 */
+	private static int PartitionDepth = 4;
+
+	private int numThreads;
+
+	public ContextWordTrieBuilder() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ContextWordTrieBuilder(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * Convert the context words to morse words and put them into the dictionary.
+	 *
+	 * @param dictionary Context word trie
+	 * @param contextWords List of context words
+	 */
+	public void build(final ContextWordTrie dictionary, List<String> contextWords) throws Exception {
+		if (numThreads == 1) {
+			for (String contextWord : contextWords) {
+				dictionary.put(contextWord);
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+		try {
+			List<MorseWordToContextWord> mwccList = encode(executor, dictionary, contextWords);
+
+			// partition by leading elements
+			List<List<MorseWordToContextWord>> partitionList = new ArrayList<List<MorseWordToContextWord>>();
+			for (int i = 0; i < numThreads; i++) {
+				partitionList.add(new ArrayList<MorseWordToContextWord>(mwccList.size() / numThreads + 1));
+			}
+
+			for (MorseWordToContextWord mwcc : mwccList) {
+				partitionList.get(partition(mwcc.getKey())).add(mwcc);
+			}
+
+			// put each partition into its own trie
+			List<Future<ContextWordTrie>> futureList = new ArrayList<Future<ContextWordTrie>>();
+			for (final List<MorseWordToContextWord> partition : partitionList) {
+				futureList.add(executor.submit(new Callable<ContextWordTrie>() {
+					public ContextWordTrie call() {
+						ContextWordTrie trie = new ContextWordTrie(dictionary.getAnalyzer());
+						trie.putAllSorted(partition);
+						return trie;
+					}
+				}));
+			}
+
+			for (Future<ContextWordTrie> future : futureList) {
+				dictionary.merge(future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Convert the context words to morse words in parallel, and put them into the dictionary
+	 * on the calling thread in the given order. This is the fast path for sorted context words,
+	 * because consecutive words share their leading elements.
+	 *
+	 * @param dictionary Context word trie
+	 * @param contextWords List of sorted context words
+	 */
+	public void buildSorted(ContextWordTrie dictionary, List<String> contextWords) throws Exception {
+		if (numThreads == 1) {
+			List<MorseWordToContextWord> mwccList = new ArrayList<MorseWordToContextWord>(contextWords.size());
+			for (String contextWord : contextWords) {
+				mwccList.add(dictionary.encode(contextWord));
+			}
+			dictionary.putAllSorted(mwccList);
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+		try {
+			dictionary.putAllSorted(encode(executor, dictionary, contextWords));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Convert context words to morse words, one slice of the list per thread.
+	 *
+	 * @return List of MorseWordToContextWord entries in the order of the context words
+	 */
+	private List<MorseWordToContextWord> encode(
+					ExecutorService executor,
+					final ContextWordTrie dictionary,
+					List<String> contextWords) throws Exception {
+
+		List<Future<List<MorseWordToContextWord>>> futureList = new ArrayList<Future<List<MorseWordToContextWord>>>();
+		int sliceSize = contextWords.size() / numThreads + 1;
+
+		for (int from = 0; from < contextWords.size(); from += sliceSize) {
+			final List<String> slice = contextWords.subList(from, Math.min(from + sliceSize, contextWords.size()));
+
+			futureList.add(executor.submit(new Callable<List<MorseWordToContextWord>>() {
+				public List<MorseWordToContextWord> call() {
+					List<MorseWordToContextWord> mwccList = new ArrayList<MorseWordToContextWord>(slice.size());
+					for (String contextWord : slice) {
+						mwccList.add(dictionary.encode(contextWord));
+					}
+					return mwccList;
+				}
+			}));
+		}
+
+		List<MorseWordToContextWord> mwccList = new ArrayList<MorseWordToContextWord>(contextWords.size());
+		for (Future<List<MorseWordToContextWord>> future : futureList) {
+			mwccList.addAll(future.get());
+		}
+		return mwccList;
+	}
+
+	/**
+	 * Morse words with the same leading elements always go to the same partition.
+	 *
+	 * @param morseWord Morse word
+	 * @return Index of the partition
+	 */
+	private int partition(String morseWord) {
+		int hash = 0;
+		int len = Math.min(PartitionDepth, morseWord.length());
+
+		for (int i = 0; i < len; i++) {
+			hash = 31 * hash + morseWord.charAt(i);
+		}
+		return (hash & Integer.MAX_VALUE) % numThreads;
+	}
+}
@@ -0,0 +1,355 @@
+package com.test.app.v2;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.test.util.trie.v2.Trie;
+
+/**
+ * Shape and estimated heap size of a context word trie.
+ *
+ * The trie is walked once, depth first, with an explicit stack, so the walk uses memory in
+ * proportion to the depth of the trie and has no recursion limit. Each node is counted when
+ * it is pushed, and its retained size is added to its parent when it is popped.
+ *
+ * Sizes are estimates for a 64-bit JVM with compressed references. Context words are counted
+ * in every node which stores them, even if the String objects are shared.
+ *
+ */
+public class ContextWordTrieStats {
+	static long NodeSize = 64;
+	static long ViewSize = 16;
+	static long LongSize = 16;
+
+	private static long HashMapSize = 48;
+	private static long HashSetSize = 16;
+	private static long EntrySize = 32;
+	private static long ArrayHeaderSize = 16;
+	private static long StringSize = 24;
+	private static long ReferenceSize = 4;
+
+	private long numNodes;
+	private int maxDepth;
+	private long numValueNodes;
+	private long numWords;
+
+	/**
+	 * Number of nodes by depth and number of children
+	 */
+	private List<long[]> fanOutList = new ArrayList<long[]>();
+
+	/**
+	 * Number of nodes by number of context words
+	 */
+	private long[] wordsPerNode = new long[2];
+
+	/**
+	 * Runs of nodes which have a single child and no context word
+	 */
+	private long numChains;
+	private long numChainNodes;
+	private int longestChain;
+
+	private long totalSize;
+
+	/**
+	 * Depth of the subtrees whose sizes are kept
+	 */
+	private int subtreeDepth;
+
+	/**
+	 * Morse prefix to estimated retained size of the subtrees at the subtree depth
+	 */
+	private Map<String, Long> subtreeSizeMap = new LinkedHashMap<String, Long>();
+
+	private ContextWordTrieStats(int subtreeDepth) {
+		this.subtreeDepth = subtreeDepth;
+	}
+
+	/**
+	 * Node on the stack of the walk
+	 */
+	private static class Frame {
+		private ContextWordTrie trie;
+		private Iterator<Trie<String, String>> children;
+
+		/**
+		 * Retained size of the node and the descendants popped so far
+		 */
+		private long size;
+
+		/**
+		 * Length of the run of single child nodes without context word ending at this node
+		 */
+		private int chain;
+
+		Frame(ContextWordTrie trie, long size, int chain) {
+			this.trie = trie;
+			this.children = trie.getChildren().iterator();
+			this.size = size;
+			this.chain = chain;
+		}
+	}
+
+	/**
+	 * @param trie Context word trie
+	 * @param subtreeDepth Depth of the subtrees whose sizes are kept, such as 2 for the subtrees
+	 * of the 4 two-element prefixes
+	 * @return Statistics of the trie
+	 */
+	public static ContextWordTrieStats collect(ContextWordTrie trie, int subtreeDepth) {
+		ContextWordTrieStats stats = new ContextWordTrieStats(subtreeDepth);
+		List<Frame> stack = new ArrayList<Frame>();
+		StringBuilder prefix = new StringBuilder();
+
+		stack.add(new Frame(trie, stats.count(trie, 0), 0));
+
+		while (stack.isEmpty() == false) {
+			Frame top = stack.get(stack.size() - 1);
+
+			if (top.children.hasNext()) {
+				ContextWordTrie child = (ContextWordTrie) top.children.next();
+				int depth = stack.size();
+				prefix.append(child.getKey());
+
+				int chain = 0;
+				if (child.getChildren().size() == 1 && (child.getValueSet() == null || child.getValueSet().isEmpty())) {
+					chain = top.chain + 1;
+				} else if (top.chain > 0) {
+					stats.countChain(top.chain);
+				}
+
+				stack.add(new Frame(child, stats.count(child, depth), chain));
+				continue;
+			}
+
+			stack.remove(stack.size() - 1);
+			int depth = stack.size();
+
+			if (depth == stats.subtreeDepth) {
+				stats.subtreeSizeMap.put(prefix.toString(), top.size);
+			}
+
+			if (stack.isEmpty()) {
+				stats.totalSize = top.size;
+			} else {
+				stack.get(stack.size() - 1).size += top.size;
+				prefix.setLength(prefix.length() - top.trie.getKey().length());
+			}
+		}
+		return stats;
+	}
+
+	/**
+	 * Count the node itself.
+	 *
+	 * @return Estimated size of the node alone
+	 */
+	private long count(ContextWordTrie trie, int depth) {
+		numNodes++;
+		maxDepth = Math.max(maxDepth, depth);
+
+		int fanOut = trie.getChildren().size();
+		while (fanOutList.size() <= depth) {
+			fanOutList.add(new long[3]);
+		}
+		long[] histogram = fanOutList.get(depth);
+		if (fanOut >= histogram.length) {
+			long[] newHistogram = new long[fanOut + 1];
+			System.arraycopy(histogram, 0, newHistogram, 0, histogram.length);
+			fanOutList.set(depth, newHistogram);
+			histogram = newHistogram;
+		}
+		histogram[fanOut]++;
+
+		int numNodeWords = trie.getValueSet() != null ? trie.getValueSet().size() : 0;
+		if (numNodeWords >= wordsPerNode.length) {
+			long[] newWordsPerNode = new long[Math.max(numNodeWords + 1, wordsPerNode.length * 2)];
+			System.arraycopy(wordsPerNode, 0, newWordsPerNode, 0, wordsPerNode.length);
+			wordsPerNode = newWordsPerNode;
+		}
+		wordsPerNode[numNodeWords]++;
+
+		if (numNodeWords > 0) {
+			numValueNodes++;
+			numWords += numNodeWords;
+		}
+		return trie.estimateNodeSize();
+	}
+
+	private void countChain(int length) {
+		numChains++;
+		numChainNodes += length;
+		longestChain = Math.max(longestChain, length);
+	}
+
+	static long estimateHashMapSize(int size, int initialCapacity) {
+		if (size == 0) {
+			return HashMapSize;
+		}
+
+		int capacity = 1;
+		while (capacity < initialCapacity) {
+			capacity *= 2;
+		}
+		while (size > capacity * 3 / 4) {
+			capacity *= 2;
+		}
+		return HashMapSize + align(ArrayHeaderSize + capacity * ReferenceSize) + size * EntrySize;
+	}
+
+	static long estimateHashSetSize(int size, int initialCapacity) {
+		return HashSetSize + estimateHashMapSize(size, initialCapacity);
+	}
+
+	static long estimateStringSize(String s) {
+		return StringSize + align(ArrayHeaderSize + s.length());
+	}
+
+	private static long align(long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * @return Number of nodes, including the root
+	 */
+	public long getNodeCount() {
+		return numNodes;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * @return Number of nodes which have context words
+	 */
+	public long getValueNodeCount() {
+		return numValueNodes;
+	}
+
+	/**
+	 * @return Number of context words, counted once per node which stores them
+	 */
+	public long getWordCount() {
+		return numWords;
+	}
+
+	/**
+	 * @param depth Depth
+	 * @return Number of nodes at the depth by number of children
+	 */
+	public long[] getFanOut(int depth) {
+		return depth < fanOutList.size() ? fanOutList.get(depth).clone() : new long[0];
+	}
+
+	/**
+	 * @return Number of nodes by number of context words
+	 */
+	public long[] getWordsPerNode() {
+		return wordsPerNode.clone();
+	}
+
+	/**
+	 * @return Number of runs of nodes which have a single child and no context word, which a
+	 * path-compressed trie would collapse into edges
+	 */
+	public long getChainCount() {
+		return numChains;
+	}
+
+	public long getChainNodeCount() {
+		return numChainNodes;
+	}
+
+	public int getLongestChain() {
+		return longestChain;
+	}
+
+	/**
+	 * @return Estimated retained size of the whole trie in bytes
+	 */
+	public long getEstimatedSize() {
+		return totalSize;
+	}
+
+	/**
+	 * @return Morse prefix to estimated retained size in bytes of the subtrees at the subtree depth
+	 */
+	public Map<String, Long> getSubtreeSizes() {
+		return Collections.unmodifiableMap(subtreeSizeMap);
+	}
+
+	public void print(PrintStream out) {
+		out.printf("nodes %d, depth %d, nodes with words %d, words %d%n", numNodes, maxDepth, numValueNodes, numWords);
+		out.printf("single child chains %d, nodes in chains %d, longest chain %d%n", numChains, numChainNodes, longestChain);
+		out.printf("estimated size %d bytes, %.1f bytes per node%n", totalSize, numNodes > 0 ? (double) totalSize / numNodes : 0.0);
+
+		out.println("fan-out by depth (nodes with 0, 1, 2, ... children):");
+		for (int depth = 0; depth < fanOutList.size(); ) {
+			// depths with the same counts are printed as one range
+			int end = depth + 1;
+			while (end < fanOutList.size() && Arrays.equals(fanOutList.get(depth), fanOutList.get(end))) {
+				end++;
+			}
+
+			out.printf("  %11s:", end - depth > 1 ? depth + "-" + (end - 1) : Integer.toString(depth));
+			for (long count : fanOutList.get(depth)) {
+				out.printf(" %d", count);
+			}
+			out.println();
+			depth = end;
+		}
+
+		out.println("words per node (nodes with 0, 1, 2, ... words):");
+		out.print("  ");
+		int last = wordsPerNode.length - 1;
+		while (last > 0 && wordsPerNode[last] == 0) {
+			last--;
+		}
+		for (int i = 0; i <= last; i++) {
+			out.printf(" %d", wordsPerNode[i]);
+		}
+		out.println();
+
+		List<Map.Entry<String, Long>> entryList = new ArrayList<Map.Entry<String, Long>>(subtreeSizeMap.entrySet());
+		Collections.sort(entryList, new Comparator<Map.Entry<String, Long>>() {
+			public int compare(Map.Entry<String, Long> e1, Map.Entry<String, Long> e2) {
+				return e2.getValue().compareTo(e1.getValue());
+			}
+		});
+
+		out.printf("largest subtrees at depth %d:%n", subtreeDepth);
+		for (int i = 0; i < entryList.size() && i < 20; i++) {
+			out.printf("  %-12s %d bytes%n", entryList.get(i).getKey(), entryList.get(i).getValue());
+		}
+	}
+
+	/**
+	 * Print the report of the dictionary built from a context word file, one word per line.
+	 *
+	 * Arguments: path of Morse code table file, path of context word file, and optionally the
+	 * depth of the subtrees reported.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 2) {
+			System.err.println("Usage: ContextWordTrieStats <morse code table file> <context word file> [subtree depth]");
+			return;
+		}
+
+		// context words are encoded with the table when they are put
+		ContextWordFinder.inputMorseTable(args[0]);
+		ContextWordFinder finder = new ContextWordFinder();
+		finder.inputContextWords(args[1]);
+
+		int subtreeDepth = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		collect(finder.getDictionary(), subtreeDepth).print(System.out);
+	}
+}
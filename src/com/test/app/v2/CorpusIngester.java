@@ -0,0 +1,255 @@
+package com.test.app.v2;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Build up the dictionary from a large ASCII text corpus in one pass.
+ *
+ * 	1. The corpus file is memory-mapped in chunks, one or more per thread. A chunk boundary
+ * 	   is moved forward to the next delimiter, so no word is split between two chunks.
+ * 	2. Each thread scans its chunks in place and counts the words. A word is a run of
+ * 	   characters which have a Morse code, upper-cased; any other byte is a delimiter.
+ * 	   Only the first occurrence of a word in a chunk is copied out of the mapped buffer.
+ * 	3. The counts are merged, and each word is put into the dictionary with its frequency
+ * 	   as weight.
+ *
+ */
+public class CorpusIngester {
+	/**
+	 * Largest region mapped at once, well under the 2 GB limit of a mapped buffer
+	 */
+	private static long MaxChunkSize = 256L * 1024 * 1024;
+
+	private static long MinChunkSize = 1024 * 1024;
+
+	private int numThreads;
+
+	/**
+	 * True if the byte, upper-cased, is a character which has a Morse code
+	 */
+	private boolean[] wordByteTable = new boolean[256];
+
+	/**
+	 * Upper case of each byte
+	 */
+	private byte[] upperCaseTable = new byte[256];
+
+	public CorpusIngester(Map<String, String> morseCodeMap) {
+		this(morseCodeMap, Runtime.getRuntime().availableProcessors());
+	}
+
+	public CorpusIngester(Map<String, String> morseCodeMap, int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+
+		for (int b = 0; b < 256; b++) {
+			char upper = Character.toUpperCase((char) b);
+			upperCaseTable[b] = upper < 256 ? (byte) upper : (byte) b;
+			wordByteTable[b] = upper < 256 && morseCodeMap.containsKey(Character.toString(upper));
+		}
+	}
+
+	/**
+	 * Count the words of the corpus, and put them into the dictionary with their frequencies
+	 * as weights.
+	 *
+	 * @param path Path of corpus file
+	 * @param dictionary Context word trie
+	 * @return Number of distinct words
+	 */
+	public int ingest(String path, ContextWordTrie dictionary) throws Exception {
+		Map<String, Long> frequencyMap = count(path);
+
+		for (Map.Entry<String, Long> entry : frequencyMap.entrySet()) {
+			MorseWordToContextWord mwcc = dictionary.encode(entry.getKey());
+			dictionary.put(mwcc.getKey(), mwcc.getValue(), entry.getValue());
+		}
+		return frequencyMap.size();
+	}
+
+	/**
+	 * Count the words of the corpus in parallel.
+	 *
+	 * @param path Path of corpus file
+	 * @return Upper-cased word to frequency map
+	 */
+	public Map<String, Long> count(String path) throws Exception {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+
+		try {
+			final FileChannel channel = file.getChannel();
+			List<Future<WordCounter>> futureList = new ArrayList<Future<WordCounter>>();
+
+			for (final long[] chunk : split(channel)) {
+				futureList.add(executor.submit(new Callable<WordCounter>() {
+					public WordCounter call() throws Exception {
+						WordCounter counter = new WordCounter();
+						scan(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]), counter);
+						return counter;
+					}
+				}));
+			}
+
+			Map<String, Long> frequencyMap = new HashMap<String, Long>();
+			for (Future<WordCounter> future : futureList) {
+				future.get().addTo(frequencyMap);
+			}
+			return frequencyMap;
+		} finally {
+			executor.shutdown();
+			file.close();
+		}
+	}
+
+	/**
+	 * Split the file into chunks which end at a delimiter or at the end of the file.
+	 *
+	 * @return List of start and end positions
+	 */
+	private List<long[]> split(FileChannel channel) throws Exception {
+		List<long[]> chunkList = new ArrayList<long[]>();
+		long size = channel.size();
+		long chunkSize = Math.min(MaxChunkSize, Math.max(MinChunkSize, size / numThreads + 1));
+		ByteBuffer oneByte = ByteBuffer.allocate(1);
+		long start = 0;
+
+		while (start < size) {
+			long end = Math.min(size, start + chunkSize);
+
+			// move forward until the byte before end is a delimiter
+			while (end < size) {
+				oneByte.clear();
+				channel.read(oneByte, end - 1);
+				if (wordByteTable[oneByte.get(0) & 0xff] == false) {
+					break;
+				}
+				end++;
+			}
+
+			chunkList.add(new long[] {start, end});
+			start = end;
+		}
+		return chunkList;
+	}
+
+	/**
+	 * Scan the words of a chunk in place and count them.
+	 */
+	private void scan(MappedByteBuffer buf, WordCounter counter) {
+		byte[] word = new byte[64];
+		int len = 0;
+		int limit = buf.limit();
+
+		for (int i = 0; i <= limit; i++) {
+			int b = i < limit ? buf.get(i) & 0xff : -1;
+
+			if (b >= 0 && wordByteTable[b]) {
+				if (len == word.length) {
+					byte[] newWord = new byte[word.length * 2];
+					System.arraycopy(word, 0, newWord, 0, len);
+					word = newWord;
+				}
+				word[len++] = upperCaseTable[b];
+			} else if (len > 0) {
+				counter.add(word, len);
+				len = 0;
+			}
+		}
+	}
+
+	/**
+	 * Open addressing hash table from word bytes to count, so counting a word seen before
+	 * allocates nothing.
+	 */
+	private static class WordCounter {
+		private byte[][] keys = new byte[1024][];
+		private int[] hashes = new int[1024];
+		private long[] counts = new long[1024];
+		private int size;
+
+		void add(byte[] word, int len) {
+			int hash = 1;
+			for (int i = 0; i < len; i++) {
+				hash = 31 * hash + word[i];
+			}
+
+			int mask = keys.length - 1;
+			int slot = hash & mask;
+
+			while (keys[slot] != null) {
+				if (hashes[slot] == hash && equals(keys[slot], word, len)) {
+					counts[slot]++;
+					return;
+				}
+				slot = (slot + 1) & mask;
+			}
+
+			byte[] key = new byte[len];
+			System.arraycopy(word, 0, key, 0, len);
+			keys[slot] = key;
+			hashes[slot] = hash;
+			counts[slot] = 1;
+
+			if (++size * 2 > keys.length) {
+				grow();
+			}
+		}
+
+		private static boolean equals(byte[] key, byte[] word, int len) {
+			if (key.length != len) {
+				return false;
+			}
+			for (int i = 0; i < len; i++) {
+				if (key[i] != word[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void grow() {
+			byte[][] oldKeys = keys;
+			int[] oldHashes = hashes;
+			long[] oldCounts = counts;
+
+			keys = new byte[oldKeys.length * 2][];
+			hashes = new int[keys.length];
+			counts = new long[keys.length];
+			int mask = keys.length - 1;
+
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					int slot = oldHashes[i] & mask;
+					while (keys[slot] != null) {
+						slot = (slot + 1) & mask;
+					}
+					keys[slot] = oldKeys[i];
+					hashes[slot] = oldHashes[i];
+					counts[slot] = oldCounts[i];
+				}
+			}
+		}
+
+		void addTo(Map<String, Long> frequencyMap) {
+			for (int i = 0; i < keys.length; i++) {
+				if (keys[i] != null) {
+					String word = new String(keys[i], StandardCharsets.ISO_8859_1);
+					Long count = frequencyMap.get(word);
+					frequencyMap.put(word, count == null ? counts[i] : count + counts[i]);
+				}
+			}
+		}
+	}
+}
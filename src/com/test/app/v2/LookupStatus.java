@@ -7,6 +7,7 @@ package com.test.app.v2;
  */
 public class LookupStatus {
 	private boolean perfectMatch;
+	private MatchType matchType = MatchType.NONE;
 
 	public LookupStatus() {
 	}
@@ -18,4 +19,18 @@ public class LookupStatus {
 	public boolean isPerfectMatch() {
 		return perfectMatch;
 	}
+	
+	/**
+	 * Set the match type, and whether it is perfect match or not.
+	 * 
+	 * @param matchType Match type
+	 */
+	public void setMatchType(MatchType matchType) {
+		this.matchType = matchType;
+		this.perfectMatch = matchType.isPerfectMatch();
+	}
+	
+	public MatchType getMatchType() {
+		return matchType;
+	}
 }
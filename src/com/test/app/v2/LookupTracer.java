@@ -0,0 +1,251 @@
+package com.test.app.v2;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Record how a sample of look-ups were decided, into a ring buffer of the latest ones.
+ *
+ * A tracer is attached to a dictionary by {@link ContextWordTrie#setTracer(LookupTracer)}.
+ * Without a tracer, a look-up only reads one field. With a tracer, each look-up is sampled
+ * with a probability of 1 in the sample rate, and only a sampled look-up is timed and
+ * allocates its record. When the buffer is full, the oldest records are overwritten.
+ *
+ * Look-ups on several threads can be traced at the same time.
+ *
+ */
+public class LookupTracer {
+	private AtomicReferenceArray<LookupTrace> traces;
+
+	/**
+	 * Sequence number of the next record
+	 */
+	private AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * One look-up in this many is traced, or 0 for none
+	 */
+	private volatile int sampleRate;
+
+	/**
+	 * @param capacity Number of latest records kept
+	 * @param sampleRate One look-up in this many is traced; 1 traces all, 0 none
+	 */
+	public LookupTracer(int capacity, int sampleRate) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.traces = new AtomicReferenceArray<LookupTrace>(capacity);
+		setSampleRate(sampleRate);
+	}
+
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = Math.max(0, sampleRate);
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return True if the look-up about to start should be traced
+	 */
+	boolean sample() {
+		int rate = sampleRate;
+		return rate == 1 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) == 0);
+	}
+
+	/**
+	 * Record a look-up which has found its best nodes.
+	 *
+	 * @param trie Trie object the look-up started from
+	 * @param morseWord Morse word
+	 * @param result Look-up result, before the words are filled
+	 * @param nanos Time taken
+	 */
+	void record(ContextWordTrie trie, CharSequence morseWord, MatchResult result, long nanos) {
+		List<ContextWordTrie> nodes = result.getNodes();
+		List<String> words = new ArrayList<String>();
+		for (ContextWordTrie node : nodes) {
+			Set<String> wordSet = result.isPerfectMatch() ? node.getBestMatchSet() : node.getValueSet();
+			for (String contextWord : wordSet) {
+				if (words.contains(contextWord) == false) {
+					words.add(contextWord);
+				}
+			}
+		}
+
+		// depth of the nodes found, relative to the trie object the look-up started from
+		int depth = nodes.isEmpty() ? -1 : nodes.get(0).getDepth() - trie.getDepth();
+
+		add(morseWord, result, depth, nodes.size(), nanos, words);
+	}
+
+	/**
+	 * Record a look-up which has filled its words, such as one on an overlay.
+	 *
+	 * @param morseWord Morse word
+	 * @param result Look-up result
+	 * @param depth Depth of the nodes whose words are the best, or -1 if there is none
+	 * @param numNodes Number of nodes whose words are the best
+	 * @param nanos Time taken
+	 */
+	void record(CharSequence morseWord, MatchResult result, int depth, int numNodes, long nanos) {
+		add(morseWord, result, depth, numNodes, nanos, new ArrayList<String>(result.getWords()));
+	}
+
+	private void add(CharSequence morseWord, MatchResult result, int depth, int numNodes, long nanos, List<String> words) {
+		long seq = sequence.getAndIncrement();
+		traces.set((int) (seq % traces.length()), new LookupTrace(seq, System.currentTimeMillis(),
+				morseWord.toString(), result.getMatchType(), result.getMatchedLength(), depth, numNodes,
+				result.getNodesVisited(), nanos, words));
+	}
+
+	/**
+	 * @return Records kept, oldest first
+	 */
+	public List<LookupTrace> getTraces() {
+		long next = sequence.get();
+		List<LookupTrace> traceList = new ArrayList<LookupTrace>();
+
+		for (long seq = Math.max(0, next - traces.length()); seq < next; seq++) {
+			LookupTrace trace = traces.get((int) (seq % traces.length()));
+
+			// a slot may be overwritten by a newer record, or not written yet
+			if (trace != null && trace.getSequence() == seq) {
+				traceList.add(trace);
+			}
+		}
+		return traceList;
+	}
+
+	/**
+	 * Print the records kept, oldest first.
+	 */
+	public void dump(PrintStream out) {
+		for (LookupTrace trace : getTraces()) {
+			out.println(trace);
+		}
+	}
+
+	/**
+	 * Forget the records kept.
+	 */
+	public void clear() {
+		for (int i = 0; i < traces.length(); i++) {
+			traces.set(i, null);
+		}
+	}
+
+	/**
+	 * How one look-up was decided.
+	 */
+	public static class LookupTrace {
+		private long sequence;
+		private long time;
+		private String morseWord;
+		private MatchType matchType;
+		private int matchedLength;
+		private int depth;
+		private int numNodes;
+		private int nodesVisited;
+		private long nanos;
+		private List<String> words;
+
+		LookupTrace(long sequence, long time, String morseWord, MatchType matchType, int matchedLength,
+				int depth, int numNodes, int nodesVisited, long nanos, List<String> words) {
+			this.sequence = sequence;
+			this.time = time;
+			this.morseWord = morseWord;
+			this.matchType = matchType;
+			this.matchedLength = matchedLength;
+			this.depth = depth;
+			this.numNodes = numNodes;
+			this.nodesVisited = nodesVisited;
+			this.nanos = nanos;
+			this.words = Collections.unmodifiableList(words);
+		}
+
+		public long getSequence() {
+			return sequence;
+		}
+
+		/**
+		 * @return Time of the look-up in milliseconds since the epoch
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		public String getMorseWord() {
+			return morseWord;
+		}
+
+		public MatchType getMatchType() {
+			return matchType;
+		}
+
+		/**
+		 * @return Number of elements of the morse word found in the trie
+		 */
+		public int getMatchedLength() {
+			return matchedLength;
+		}
+
+		/**
+		 * @return Depth of the nodes whose words are the best: the end of the morse word for a
+		 * perfect match, the nearest level with words for a forward scan, or the deepest ancestor
+		 * with words for a backward scan; -1 if there is none
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * @return Number of nodes whose words are the best; more than one only for a forward scan
+		 * or a morse word with unknown elements
+		 */
+		public int getNodeCount() {
+			return numNodes;
+		}
+
+		public int getNodesVisited() {
+			return nodesVisited;
+		}
+
+		public long getNanos() {
+			return nanos;
+		}
+
+		public List<String> getWords() {
+			return words;
+		}
+
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append('#').append(sequence).append(' ').append(time).append(' ').append(morseWord);
+			sb.append(' ').append(matchType).append(" matched=").append(matchedLength);
+
+			switch (matchType) {
+			case TRUNCATED:
+				sb.append(" forward=").append(depth - matchedLength).append(" nodes=").append(numNodes);
+				break;
+			case EXTRA:
+				sb.append(" backward=").append(depth);
+				break;
+			default:
+				break;
+			}
+
+			sb.append(" visited=").append(nodesVisited).append(" nanos=").append(nanos);
+			sb.append(' ').append(words);
+			return sb.toString();
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reusable sink of a look-up, filled by {@link ContextWordTrie#getBestMatch(CharSequence, MatchResult)}.
+ *
+ * The best matched context words are kept as they are stored in the trie, without "!" or "?",
+ * and how they are matched is kept in the match type. The lists grow to the largest result
+ * seen and are then reused, so looking up again with the same object allocates nothing.
+ *
+ * A result is not thread safe. Each thread should have its own.
+ *
+ */
+public class MatchResult {
+	private MatchType matchType = MatchType.NONE;
+	
+	private List<String> words = new ArrayList<String>();
+	private List<String> wordView = Collections.unmodifiableList(words);
+
+	/**
+	 * Words added by {@link #addWordOnce(String)}, to find duplicates in constant time
+	 */
+	private Set<String> wordSet = new HashSet<String>();
+
+	/**
+	 * Nodes whose context words are the best match
+	 */
+	private List<ContextWordTrie> nodes = new ArrayList<ContextWordTrie>();
+
+	/**
+	 * Next level of the forward scan
+	 */
+	private List<ContextWordTrie> scratch = new ArrayList<ContextWordTrie>();
+
+	/**
+	 * The deepest nodes with context words before the last element, on the paths of a morse
+	 * word with unknown elements
+	 */
+	private List<ContextWordTrie> ancestors = new ArrayList<ContextWordTrie>();
+
+	/**
+	 * Number of elements of the morse word found in the trie
+	 */
+	private int matchedLength;
+
+	/**
+	 * Number of nodes visited by the look-up
+	 */
+	private int nodesVisited;
+
+	public MatchResult() {
+	}
+
+	/**
+	 * @return Unmodifiable view of the best matched context words, valid until the next look-up
+	 */
+	public List<String> getWords() {
+		return wordView;
+	}
+
+	public MatchType getMatchType() {
+		return matchType;
+	}
+
+	void setMatchType(MatchType matchType) {
+		this.matchType = matchType;
+	}
+
+	public boolean isPerfectMatch() {
+		return matchType.isPerfectMatch();
+	}
+
+	public int getMatchedLength() {
+		return matchedLength;
+	}
+
+	void setMatchedLength(int matchedLength) {
+		this.matchedLength = matchedLength;
+		this.nodesVisited += matchedLength;
+	}
+
+	/**
+	 * @return Number of nodes visited by the look-up, on the path of the morse word and while
+	 * scanning forward
+	 */
+	public int getNodesVisited() {
+		return nodesVisited;
+	}
+
+	void addNodesVisited(int numNodes) {
+		nodesVisited += numNodes;
+	}
+
+	public String getWord(int index) {
+		return words.get(index);
+	}
+
+	public int size() {
+		return words.size();
+	}
+
+	public boolean isEmpty() {
+		return words.isEmpty();
+	}
+
+	/**
+	 * Forget the last look-up, keeping the capacity.
+	 */
+	public void clear() {
+		words.clear();
+		wordSet.clear();
+		nodes.clear();
+		scratch.clear();
+		matchedLength = 0;
+		nodesVisited = 0;
+		setMatchType(MatchType.NONE);
+	}
+
+	void addWord(String contextWord) {
+		words.add(contextWord);
+	}
+
+	/**
+	 * Add the context word unless it was added before, for words merged from several nodes.
+	 * Words must not be added by both this and {@link #addWord(String)} in one look-up.
+	 */
+	void addWordOnce(String contextWord) {
+		if (wordSet.add(contextWord)) {
+			words.add(contextWord);
+		}
+	}
+
+	List<ContextWordTrie> getNodes() {
+		return nodes;
+	}
+
+	List<ContextWordTrie> getScratch() {
+		return scratch;
+	}
+
+	List<ContextWordTrie> getAncestors() {
+		return ancestors;
+	}
+
+	/**
+	 * Exchange the nodes and the next level of the forward scan.
+	 */
+	void swapNodes() {
+		List<ContextWordTrie> tmp = nodes;
+		nodes = scratch;
+		scratch = tmp;
+	}
+}
@@ -0,0 +1,76 @@
+package com.test.app.v2;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * How the context words returned for a morse word are matched.
+ * 
+ */
+public enum MatchType {
+	/**
+	 * The morse word matches exactly one context word.
+	 */
+	EXACT,
+	
+	/**
+	 * The morse word matches several context words, and the ones with the fewest 
+	 * characters are returned.
+	 */
+	AMBIGUOUS,
+	
+	/**
+	 * The morse word is truncated. The context words have the fewest extra elements 
+	 * beyond those in morse.
+	 */
+	TRUNCATED,
+	
+	/**
+	 * The morse word has extra elements appended. The context words match the longest 
+	 * prefix of morse.
+	 */
+	EXTRA,
+	
+	/**
+	 * No context word matches.
+	 */
+	NONE;
+	
+	private static String PerfectMatchAmbiguityIndicator = "!";
+	private static String ImperfectMatchSuffixIndicator = "?";
+	
+	public boolean isPerfectMatch() {
+		return this == EXACT || this == AMBIGUOUS;
+	}
+	
+	/**
+	 * @return Suffix of the context words matched this way: "!" if they are several perfect 
+	 * matches, "?" if the match is imperfect, otherwise empty
+	 */
+	String getIndicator() {
+		switch (this) {
+		case AMBIGUOUS:
+			return PerfectMatchAmbiguityIndicator;
+		case TRUNCATED:
+		case EXTRA:
+			return ImperfectMatchSuffixIndicator;
+		default:
+			return "";
+		}
+	}
+	
+	/**
+	 * @param contextWords Context words matched this way
+	 * @return New set of the context words, each suffixed with the indicator of the match type
+	 */
+	Set<String> decorate(Collection<String> contextWords) {
+		Set<String> bestSet = new HashSet<String>();
+		String indicator = getIndicator();
+		
+		for (String contextWord : contextWords) {
+			bestSet.add(indicator.isEmpty() ? contextWord : contextWord + indicator);
+		}
+		return bestSet;
+	}
+}
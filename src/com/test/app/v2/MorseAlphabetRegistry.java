@@ -0,0 +1,157 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Serve several Morse alphabets, such as International, American and Wabun Morse, side by side.
+ *
+ * Each alphabet is registered under a name with its own code table and its own context word
+ * trie. Context words put into several alphabets are pooled, so a word shared by the alphabets
+ * is one String object however many tries store it.
+ *
+ * Registering and putting are synchronized. Look-ups take no lock: registering publishes a new
+ * copy of the alphabet map, and look-ups read the latest copy. The dictionaries should be built
+ * up before they are looked up from several threads.
+ *
+ * Only the most recently pooled words are remembered, so the pool does not grow with the
+ * vocabulary. A word put again after it has been dropped from the pool is still stored, but
+ * may not be shared with the String objects put before.
+ *
+ */
+public class MorseAlphabetRegistry {
+	private static int MaxPoolSize = 64 * 1024;
+
+	/**
+	 * Unmodifiable map of the alphabets, replaced by a new copy when an alphabet is registered
+	 */
+	private volatile Map<String, ContextWordTrie> dictionaryMap = Collections.emptyMap();
+
+	/**
+	 * Context words shared by the dictionaries, the least recently used dropped first
+	 */
+	private Map<String, String> wordPool = new LinkedHashMap<String, String>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+			return size() > MaxPoolSize;
+		}
+	};
+
+	/**
+	 * Register an alphabet with its code table. An alphabet registered before under the same
+	 * name is replaced.
+	 *
+	 * @param alphabet Name of alphabet
+	 * @param morseCodeMap Character to code map
+	 * @return Dictionary of the alphabet
+	 */
+	public synchronized ContextWordTrie register(String alphabet, Map<String, String> morseCodeMap) {
+		ContextWordTrie dictionary = new ContextWordTrie(new MorseWordAnalyzer(), morseCodeMap);
+		Map<String, ContextWordTrie> newMap = new LinkedHashMap<String, ContextWordTrie>(dictionaryMap);
+		newMap.put(alphabet, dictionary);
+		dictionaryMap = Collections.unmodifiableMap(newMap);
+		return dictionary;
+	}
+
+	/**
+	 * Register an alphabet with the code table read from a file.
+	 *
+	 * @param alphabet Name of alphabet
+	 * @param path Path of Morse code table file
+	 * @return Dictionary of the alphabet
+	 */
+	public ContextWordTrie register(String alphabet, String path) throws Exception {
+		return register(alphabet, ContextWordFinder.readMorseTable(path));
+	}
+
+	/**
+	 * @param alphabet Name of alphabet
+	 * @return Dictionary of the alphabet
+	 * @throws IllegalArgumentException if the alphabet is not registered
+	 */
+	public ContextWordTrie getDictionary(String alphabet) {
+		ContextWordTrie dictionary = dictionaryMap.get(alphabet);
+		if (dictionary == null) {
+			throw new IllegalArgumentException("Unknown Morse alphabet: " + alphabet);
+		}
+		return dictionary;
+	}
+
+	public Set<String> getAlphabets() {
+		return dictionaryMap.keySet();
+	}
+
+	/**
+	 * Put a context word into the dictionary of one alphabet.
+	 *
+	 * @param alphabet Name of alphabet
+	 * @param contextWord Context word
+	 * @return MorseWordToContextWord object
+	 */
+	public synchronized MorseWordToContextWord put(String alphabet, String contextWord) {
+		ContextWordTrie dictionary = getDictionary(alphabet);
+		MorseWordToContextWord mwcc = dictionary.encode(contextWord);
+		mwcc.setValue(share(mwcc.getValue()));
+		dictionary.put(mwcc.getKey(), mwcc.getValue());
+		return mwcc;
+	}
+
+	/**
+	 * Put context words into the dictionaries of all alphabets. Each word is stored once
+	 * and shared by the dictionaries, however many words there are: a word is encoded for
+	 * every alphabet before the next word is pooled, so it cannot be dropped from the pool
+	 * in between.
+	 *
+	 * @param contextWords List of context words
+	 */
+	public synchronized void putAll(List<String> contextWords) {
+		List<ContextWordTrie> dictionaryList = new ArrayList<ContextWordTrie>(dictionaryMap.values());
+		List<List<MorseWordToContextWord>> mwccLists = new ArrayList<List<MorseWordToContextWord>>(dictionaryList.size());
+		for (int i = 0; i < dictionaryList.size(); i++) {
+			mwccLists.add(new ArrayList<MorseWordToContextWord>(contextWords.size()));
+		}
+
+		for (String contextWord : contextWords) {
+			for (int i = 0; i < dictionaryList.size(); i++) {
+				MorseWordToContextWord mwcc = dictionaryList.get(i).encode(contextWord);
+				mwcc.setValue(share(mwcc.getValue()));
+				mwccLists.get(i).add(mwcc);
+			}
+		}
+		for (int i = 0; i < dictionaryList.size(); i++) {
+			dictionaryList.get(i).putAllSorted(mwccLists.get(i));
+		}
+	}
+
+	/**
+	 * {@link ContextWordTrie#getBestMatch(String)} in the dictionary of the alphabet.
+	 */
+	public Set<String> getBestMatch(String alphabet, String morseWord) {
+		return getDictionary(alphabet).getBestMatch(morseWord);
+	}
+
+	/**
+	 * {@link ContextWordTrie#getBestMatch(String, LookupStatus)} in the dictionary of the alphabet.
+	 */
+	public Set<String> getBestMatch(String alphabet, String morseWord, LookupStatus status) {
+		return getDictionary(alphabet).getBestMatch(morseWord, status);
+	}
+
+	/**
+	 * @param contextWord Context word
+	 * @return The pooled string equal to the context word
+	 */
+	private String share(String contextWord) {
+		String pooled = wordPool.get(contextWord);
+		if (pooled == null) {
+			wordPool.put(contextWord, contextWord);
+			pooled = contextWord;
+		}
+		return pooled;
+	}
+}
@@ -0,0 +1,369 @@
+package com.test.app.v2;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read input files of {@link ContextWordFinder} at the byte level.
+ *
+ * A file is read through its channel into a reusable buffer, and lines and tokens are scanned
+ * in place as spans of the buffer. Morse words and codes are ASCII, so their bytes are taken as
+ * characters without decoding. Context words and code table characters are decoded with the
+ * charset of the parser, UTF-8 by default. A context word of ASCII characters is encoded by
+ * looking up each byte in a table, and its morse word is built in a reusable buffer and walked
+ * into the trie, so no String is created for it. Strings are only created for what is kept:
+ * context words, morse words of the input, and code table entries.
+ *
+ * The file is always closed, even if reading fails. A parser is not thread safe.
+ *
+ */
+public class MorseInputParser {
+	private static int BufferSize = 64 * 1024;
+	private static String SectionSeparator = "*";
+
+	private Charset charset;
+	private ByteBuffer buffer = ByteBuffer.allocate(BufferSize);
+
+	private ByteSpan line = new ByteSpan();
+	private ByteSpan token = new ByteSpan();
+
+	/**
+	 * Morse word of the context word being put
+	 */
+	private StringBuilder morseWord = new StringBuilder();
+
+	/**
+	 * Handle a line, given as a span of the buffer valid until the next line.
+	 */
+	private interface LineHandler {
+		/**
+		 * @return False to stop reading
+		 */
+		boolean handle(ByteSpan line) throws Exception;
+	}
+
+	/**
+	 * Parser of UTF-8 files.
+	 */
+	public MorseInputParser() {
+		this(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param charset Charset of context words and code table characters, which must encode ASCII
+	 * characters as single bytes
+	 */
+	public MorseInputParser(Charset charset) {
+		this.charset = charset;
+	}
+
+	/**
+	 * @param path Path of file
+	 * @return Lines without end of line characters, decoded with the charset of the parser
+	 */
+	public List<String> readLines(String path) throws Exception {
+		final List<String> lineList = new ArrayList<String>();
+
+		scan(path, new LineHandler() {
+			public boolean handle(ByteSpan line) {
+				lineList.add(line.decode(charset));
+				return true;
+			}
+		});
+		return lineList;
+	}
+
+	/**
+	 * Read morse words separated by spaces, tabs or lines.
+	 *
+	 * @param path Path of morse word file
+	 * @param morseWordList List which gets the morse words
+	 * @return Number of morse words read
+	 */
+	public int readMorseWords(String path, final List<String> morseWordList) throws Exception {
+		int size = morseWordList.size();
+
+		scan(path, new LineHandler() {
+			public boolean handle(ByteSpan line) {
+				addMorseWords(line, morseWordList);
+				return true;
+			}
+		});
+		return morseWordList.size() - size;
+	}
+
+	/**
+	 * Read context words, one per line, and put them into the dictionary.
+	 *
+	 * @param path Path of context word file
+	 * @param dictionary Context word trie
+	 * @return Number of lines read
+	 */
+	public int readContextWords(String path, final ContextWordTrie dictionary) throws Exception {
+		final String[] codeTable = codeTable(dictionary.getMorseCodeMap());
+		final int[] numLines = new int[1];
+
+		scan(path, new LineHandler() {
+			public boolean handle(ByteSpan line) {
+				putContextWord(line, dictionary, codeTable);
+				numLines[0]++;
+				return true;
+			}
+		});
+		return numLines[0];
+	}
+
+	/**
+	 * Read a file of three sections, each ended by a line of "*": the Morse code table, one
+	 * character and code per line; the context words, one per line; and the morse words.
+	 *
+	 * @param path Path of file
+	 * @param morseCodeMap Code table which gets the first section, used by the dictionary
+	 * @param dictionary Context word trie which gets the context words
+	 * @param morseWordList List which gets the morse words
+	 */
+	public void readAll(String path, final Map<String, String> morseCodeMap, final ContextWordTrie dictionary,
+				final List<String> morseWordList) throws Exception {
+
+		scan(path, new LineHandler() {
+			private int section;
+			private String[] codeTable;
+
+			public boolean handle(ByteSpan line) {
+				line.trim();
+				if (line.contentEquals(SectionSeparator)) {
+					section++;
+					return section < 3;
+				}
+
+				switch (section) {
+				case 0:
+					int next = nextToken(line, 0);
+					if (next >= 0) {
+						String ch = token.decode(charset);
+						if (nextToken(line, next) >= 0) {
+							morseCodeMap.put(ch, token.toString());
+						}
+					}
+					break;
+				case 1:
+					// the code table is complete once the context words start
+					if (codeTable == null) {
+						codeTable = codeTable(dictionary.getMorseCodeMap());
+					}
+					putContextWord(line, dictionary, codeTable);
+					break;
+				default:
+					addMorseWords(line, morseWordList);
+					break;
+				}
+				return true;
+			}
+		});
+	}
+
+	private void addMorseWords(ByteSpan line, List<String> morseWordList) {
+		int start = 0;
+		while ((start = nextToken(line, start)) >= 0) {
+			morseWordList.add(token.toString());
+		}
+	}
+
+	/**
+	 * Put the trimmed, upper-cased line into the dictionary with its morse word.
+	 */
+	private void putContextWord(ByteSpan line, ContextWordTrie dictionary, String[] codeTable) {
+		line.trim();
+		byte[] bytes = line.bytes;
+		morseWord.setLength(0);
+
+		for (int i = line.start; i < line.end; i++) {
+			int b = bytes[i] & 0xff;
+
+			// upper case of other characters may not be one character
+			if (b >= 128) {
+				MorseWordToContextWord mwcc = dictionary.encode(line.decode(charset));
+				dictionary.put(mwcc.getKey(), mwcc.getValue());
+				return;
+			}
+
+			if (b >= 'a' && b <= 'z') {
+				bytes[i] = (byte) (b - 'a' + 'A');
+			}
+
+			// If no such code, skip it.
+			String code = codeTable[bytes[i]];
+			if (code != null) {
+				morseWord.append(code);
+			}
+		}
+		dictionary.put(morseWord, line.toString());
+	}
+
+	/**
+	 * @return Code of each ASCII character
+	 */
+	private static String[] codeTable(Map<String, String> morseCodeMap) {
+		String[] codeTable = new String[128];
+		for (Map.Entry<String, String> entry : morseCodeMap.entrySet()) {
+			if (entry.getKey().length() == 1 && entry.getKey().charAt(0) < 128) {
+				codeTable[entry.getKey().charAt(0)] = entry.getValue();
+			}
+		}
+		return codeTable;
+	}
+
+	/**
+	 * Find the next token separated by spaces or tabs, and set the token span to it.
+	 *
+	 * @param line Line
+	 * @param from Index in the line to start from
+	 * @return Index in the line after the token, or -1 if there is no more token
+	 */
+	private int nextToken(ByteSpan line, int from) {
+		int i = from;
+		while (i < line.length() && isDelimiter(line.byteAt(i))) {
+			i++;
+		}
+		if (i == line.length()) {
+			return -1;
+		}
+
+		int start = i;
+		while (i < line.length() && isDelimiter(line.byteAt(i)) == false) {
+			i++;
+		}
+		token.set(line.bytes, line.start + start, line.start + i);
+		return i;
+	}
+
+	private static boolean isDelimiter(byte b) {
+		return b == ' ' || b == '\t';
+	}
+
+	/**
+	 * Read the file through its channel and hand each line to the handler.
+	 */
+	private void scan(String path, LineHandler handler) throws Exception {
+		RandomAccessFile file = new RandomAccessFile(path, "r");
+
+		try {
+			FileChannel channel = file.getChannel();
+			buffer.clear();
+
+			while (true) {
+				boolean eof = channel.read(buffer) == -1;
+				byte[] bytes = buffer.array();
+				int end = buffer.position();
+				int start = 0;
+
+				for (int i = 0; i < end; i++) {
+					if (bytes[i] == '\n') {
+						if (handler.handle(line.set(bytes, start, i).stripCarriageReturn()) == false) {
+							return;
+						}
+						start = i + 1;
+					}
+				}
+
+				if (eof) {
+					// last line without end of line
+					if (start < end) {
+						handler.handle(line.set(bytes, start, end).stripCarriageReturn());
+					}
+					return;
+				}
+
+				if (start == 0 && end == bytes.length) {
+					// the line is longer than the buffer
+					ByteBuffer newBuffer = ByteBuffer.allocate(bytes.length * 2);
+					newBuffer.put(bytes, 0, end);
+					buffer = newBuffer;
+				} else {
+					// keep the partial line at the front
+					System.arraycopy(bytes, start, bytes, 0, end - start);
+					buffer.position(end - start);
+				}
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Span of ASCII characters in a byte array, as a CharSequence. Other text is decoded.
+	 */
+	private static class ByteSpan implements CharSequence {
+		private byte[] bytes;
+		private int start;
+		private int end;
+
+		ByteSpan set(byte[] bytes, int start, int end) {
+			this.bytes = bytes;
+			this.start = start;
+			this.end = end;
+			return this;
+		}
+
+		ByteSpan stripCarriageReturn() {
+			if (end > start && bytes[end - 1] == '\r') {
+				end--;
+			}
+			return this;
+		}
+
+		/**
+		 * Remove leading and trailing characters up to space, as String.trim()
+		 */
+		void trim() {
+			while (start < end && (bytes[start] & 0xff) <= ' ') {
+				start++;
+			}
+			while (end > start && (bytes[end - 1] & 0xff) <= ' ') {
+				end--;
+			}
+		}
+
+		byte byteAt(int index) {
+			return bytes[start + index];
+		}
+
+		boolean contentEquals(String s) {
+			if (s.length() != length()) {
+				return false;
+			}
+			for (int i = 0; i < s.length(); i++) {
+				if (charAt(i) != s.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public int length() {
+			return end - start;
+		}
+
+		public char charAt(int index) {
+			return (char) (bytes[start + index] & 0xff);
+		}
+
+		public CharSequence subSequence(int from, int to) {
+			return new ByteSpan().set(bytes, start + from, start + to);
+		}
+
+		public String toString() {
+			return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+		}
+
+		String decode(Charset charset) {
+			return new String(bytes, start, end - start, charset);
+		}
+	}
+}
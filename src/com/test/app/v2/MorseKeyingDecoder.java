@@ -0,0 +1,208 @@
+package com.test.app.v2;
+
+/**
+ * Decode a stream of key-down and key-up durations into context words, as they are keyed.
+ *
+ * In standard timing a dot is one unit long, a dash three units, the gap between the elements
+ * of a character one unit, the gap between characters three units and the gap between words
+ * seven units. At a speed of W words per minute a unit is 1200 / W milliseconds.
+ *
+ * 	Key down: shorter than the midpoint of the dot and dash lengths is a dot, otherwise a dash.
+ * 	Key up: shorter than two units is an element gap, shorter than five units a letter gap,
+ * 	        otherwise a word gap.
+ *
+ * The dot and dash lengths are tracked separately from the key-down durations, each moving
+ * the length of its element part of the way towards it, and the unit is taken from both. So
+ * the decoder follows an operator who speeds up or slows down. Two key-downs in a row, one at
+ * least twice as long as the other, are a dot and a dash whatever the lengths say. If the
+ * lengths classify them the same, the speed has changed too far to follow, and the lengths are
+ * set to them. Gaps are not tracked, as operators often stretch them.
+ *
+ * Each element is walked into the dictionary by a {@link ContextWordCursor} when it is decoded,
+ * so the best match so far is never more than one element behind. Morse words in the
+ * dictionary have no letter separator, so a letter gap only ends a character. A word gap, or
+ * {@link #flush()} at the end of the stream, ends the word and hands it to the listener.
+ *
+ * A decoder is not thread safe.
+ *
+ */
+public class MorseKeyingDecoder {
+	private static double MinWpm = 5;
+	private static double MaxWpm = 60;
+	private static double MillisPerUnitAtOneWpm = 1200;
+
+	/**
+	 * Part of the way a length moves towards the duration of its element
+	 */
+	private static double Adaptation = 0.25;
+
+	/**
+	 * Smallest ratio of two key-downs in a row which are taken as a dot and a dash
+	 */
+	private static double DashDotRatio = 2;
+
+	/**
+	 * Kind of a key-up duration
+	 */
+	public enum Gap {
+		ELEMENT, LETTER, WORD
+	}
+
+	/**
+	 * Receive the decoded words.
+	 */
+	public interface WordListener {
+		/**
+		 * @param morseWord Morse word keyed
+		 * @param result Look-up result of the morse word, valid until the listener returns
+		 */
+		void word(String morseWord, MatchResult result);
+	}
+
+	private ContextWordCursor cursor;
+	private WordListener listener;
+
+	/**
+	 * Length of a unit in milliseconds
+	 */
+	private double unit;
+
+	/**
+	 * Lengths of a dot and a dash in milliseconds
+	 */
+	private double dotLength;
+	private double dashLength;
+
+	/**
+	 * Duration of the previous key-down, or 0 if there is none
+	 */
+	private double lastKeyDown;
+
+	/**
+	 * Morse elements of the word being keyed
+	 */
+	private StringBuilder morseWord = new StringBuilder();
+
+	private MatchResult result = new MatchResult();
+
+	/**
+	 * @param dictionary Context word trie
+	 * @param wpm Initial speed in words per minute
+	 * @param listener Listener which gets the decoded words
+	 */
+	public MorseKeyingDecoder(ContextWordTrie dictionary, double wpm, WordListener listener) {
+		if (wpm < MinWpm || wpm > MaxWpm) {
+			throw new IllegalArgumentException("Speed must be between " + MinWpm + " and " + MaxWpm + " wpm: " + wpm);
+		}
+		this.cursor = new ContextWordCursor(dictionary);
+		this.listener = listener;
+		this.unit = MillisPerUnitAtOneWpm / wpm;
+		this.dotLength = unit;
+		this.dashLength = 3 * unit;
+	}
+
+	/**
+	 * Decode a key-down duration into an element and walk it into the dictionary.
+	 *
+	 * @param millis Duration in milliseconds
+	 * @return Morse element, '.' or '-'
+	 */
+	public char keyDown(double millis) {
+		double midpoint = (dotLength + dashLength) / 2;
+		char element = millis < midpoint ? '.' : '-';
+
+		if (lastKeyDown > 0) {
+			double shorter = Math.min(millis, lastKeyDown);
+			double longer = Math.max(millis, lastKeyDown);
+
+			if (longer >= DashDotRatio * shorter) {
+				element = millis == longer ? '-' : '.';
+
+				// both on the same side of the midpoint
+				if (shorter >= midpoint || longer < midpoint) {
+					dotLength = shorter;
+					dashLength = longer;
+				}
+			}
+		}
+		lastKeyDown = millis;
+
+		if (element == '.') {
+			dotLength += (millis - dotLength) * Adaptation;
+		} else {
+			dashLength += (millis - dashLength) * Adaptation;
+		}
+
+		double minUnit = MillisPerUnitAtOneWpm / MaxWpm;
+		double maxUnit = MillisPerUnitAtOneWpm / MinWpm;
+		dotLength = Math.max(minUnit, Math.min(maxUnit, dotLength));
+		dashLength = Math.max(3 * minUnit, Math.min(3 * maxUnit, dashLength));
+		unit = (dotLength + dashLength / 3) / 2;
+
+		morseWord.append(element);
+		cursor.advance(element);
+		return element;
+	}
+
+	/**
+	 * Classify a key-up duration. A word gap ends the word.
+	 *
+	 * @param millis Duration in milliseconds
+	 * @return Kind of the gap
+	 */
+	public Gap keyUp(double millis) {
+		if (millis < 2 * unit) {
+			return Gap.ELEMENT;
+		}
+		if (millis < 5 * unit) {
+			return Gap.LETTER;
+		}
+
+		flush();
+		return Gap.WORD;
+	}
+
+	/**
+	 * End the word being keyed, if any, and hand it to the listener.
+	 */
+	public void flush() {
+		if (morseWord.length() == 0) {
+			return;
+		}
+
+		listener.word(morseWord.toString(), cursor.getBestMatch(result));
+		morseWord.setLength(0);
+		cursor.reset();
+	}
+
+	/**
+	 * Look up the best match of the elements keyed so far in the word being keyed.
+	 *
+	 * @param result Look-up result, cleared and then filled with the words and the match type
+	 * @return The result
+	 */
+	public MatchResult getPartialMatch(MatchResult result) {
+		return cursor.getBestMatch(result);
+	}
+
+	/**
+	 * @return Morse elements keyed so far in the word being keyed
+	 */
+	public String getPartialMorseWord() {
+		return morseWord.toString();
+	}
+
+	/**
+	 * @return Length of a unit in milliseconds, as tracked
+	 */
+	public double getUnit() {
+		return unit;
+	}
+
+	/**
+	 * @return Speed in words per minute, as tracked
+	 */
+	public double getWpm() {
+		return MillisPerUnitAtOneWpm / unit;
+	}
+}
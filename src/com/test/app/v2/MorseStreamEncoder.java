@@ -0,0 +1,201 @@
+package com.test.app.v2;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Convert text of any size to morse words as a stream.
+ *
+ * Text is read in chunks from a Reader or byte channel, and morse words are written to the
+ * output in chunks, separated by a space. Words are split by the same delimiters as
+ * {@link MorseWordAnalyzer#analyzeText(String, Map)}, and characters without a code are skipped.
+ * The inner loop only looks up tables indexed by character, so nothing is allocated per
+ * character or per word.
+ *
+ * An encoder is not thread safe, but the tables are never changed after construction.
+ *
+ */
+public class MorseStreamEncoder {
+	private static String Delimiters = " \r\n\'\"-_.,";
+	private static char WordSeparator = ' ';
+	private static int BufferSize = 64 * 1024;
+
+	/**
+	 * Code of each character, or null if the character has no code
+	 */
+	private char[][] codeTable;
+
+	/**
+	 * Code of each byte, for ASCII and ISO-8859-1 input
+	 */
+	private byte[][] byteCodeTable = new byte[256][];
+
+	/**
+	 * True if the character is a word delimiter
+	 */
+	private boolean[] delimiterTable;
+
+	private char[] inBuffer = new char[BufferSize];
+	private char[] outBuffer = new char[BufferSize];
+
+	/**
+	 * @param morseCodeMap Character to code map
+	 */
+	public MorseStreamEncoder(Map<String, String> morseCodeMap) {
+		int maxChar = 0;
+		for (String ch : morseCodeMap.keySet()) {
+			if (ch.length() == 1) {
+				maxChar = Math.max(maxChar, Math.max(ch.charAt(0), Character.toLowerCase(ch.charAt(0))));
+			}
+		}
+		for (int i = 0; i < Delimiters.length(); i++) {
+			maxChar = Math.max(maxChar, Delimiters.charAt(i));
+		}
+
+		codeTable = new char[maxChar + 1][];
+		delimiterTable = new boolean[maxChar + 1];
+
+		for (Map.Entry<String, String> entry : morseCodeMap.entrySet()) {
+			if (entry.getKey().length() != 1) {
+				continue;
+			}
+
+			// in case text is in lower case
+			char ch = entry.getKey().charAt(0);
+			char[] code = entry.getValue().toCharArray();
+			codeTable[ch] = code;
+			if (codeTable[Character.toLowerCase(ch)] == null) {
+				codeTable[Character.toLowerCase(ch)] = code;
+			}
+		}
+
+		for (int i = 0; i < Delimiters.length(); i++) {
+			delimiterTable[Delimiters.charAt(i)] = true;
+		}
+
+		for (int ch = 0; ch < byteCodeTable.length && ch < codeTable.length; ch++) {
+			if (codeTable[ch] != null) {
+				byteCodeTable[ch] = new String(codeTable[ch]).getBytes(StandardCharsets.ISO_8859_1);
+			}
+		}
+	}
+
+	/**
+	 * Convert text from the reader to morse words written to the writer. Neither is closed.
+	 *
+	 * @param in Text input
+	 * @param out Morse word output
+	 * @return Number of morse words written
+	 */
+	public long encode(Reader in, Writer out) throws IOException {
+		long numWords = 0;
+		int outLen = 0;
+
+		// true if the current word has any code written
+		boolean inWord = false;
+		int n;
+
+		while ((n = in.read(inBuffer, 0, inBuffer.length)) != -1) {
+			for (int i = 0; i < n; i++) {
+				char ch = inBuffer[i];
+
+				if (ch < codeTable.length) {
+					if (delimiterTable[ch]) {
+						inWord = false;
+						continue;
+					}
+
+					char[] code = codeTable[ch];
+					if (code == null) {
+						continue;
+					}
+
+					// one separator and the longest code always fit after flushing
+					if (outLen + code.length + 1 > outBuffer.length) {
+						out.write(outBuffer, 0, outLen);
+						outLen = 0;
+					}
+
+					if (inWord == false) {
+						if (numWords > 0) {
+							outBuffer[outLen++] = WordSeparator;
+						}
+						inWord = true;
+						numWords++;
+					}
+
+					System.arraycopy(code, 0, outBuffer, outLen, code.length);
+					outLen += code.length;
+				}
+			}
+		}
+
+		out.write(outBuffer, 0, outLen);
+		out.flush();
+		return numWords;
+	}
+
+	/**
+	 * Convert ASCII or ISO-8859-1 text from the input channel to morse words written to the
+	 * output channel. Neither is closed.
+	 *
+	 * @param in Text input
+	 * @param out Morse word output
+	 * @return Number of morse words written
+	 */
+	public long encode(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+		ByteBuffer inBuf = ByteBuffer.allocateDirect(BufferSize);
+		ByteBuffer outBuf = ByteBuffer.allocateDirect(BufferSize);
+		long numWords = 0;
+		boolean inWord = false;
+
+		while (in.read(inBuf) != -1) {
+			inBuf.flip();
+
+			while (inBuf.hasRemaining()) {
+				int ch = inBuf.get() & 0xff;
+
+				if (ch < delimiterTable.length && delimiterTable[ch]) {
+					inWord = false;
+					continue;
+				}
+
+				byte[] code = byteCodeTable[ch];
+				if (code == null) {
+					continue;
+				}
+
+				if (outBuf.remaining() < code.length + 1) {
+					write(outBuf, out);
+				}
+
+				if (inWord == false) {
+					if (numWords > 0) {
+						outBuf.put((byte) WordSeparator);
+					}
+					inWord = true;
+					numWords++;
+				}
+				outBuf.put(code);
+			}
+			inBuf.clear();
+		}
+
+		write(outBuf, out);
+		return numWords;
+	}
+
+	private static void write(ByteBuffer buf, WritableByteChannel out) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			out.write(buf);
+		}
+		buf.clear();
+	}
+}
@@ -0,0 +1,176 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.test.util.trie.v2.Trie;
+import com.test.util.trie.v2.TrieEntry;
+
+/**
+ * Index of the suffixes of the morse words of a dictionary, for input whose leading elements
+ * were lost, such as reception starting in the middle of a word.
+ *
+ * Every suffix of every morse word is put into a trie of its own, with the context word stored
+ * in the node where the suffix ends. So the node of a morse part stores the context words whose
+ * morse words end with it, and its descendants store those whose morse words contain it. Both
+ * are found by walking the morse part from the root, in time proportional to its length, and
+ * the words containing it by then enumerating the subtree.
+ *
+ * The index takes one node per element of every suffix, so for morse words of n elements it
+ * takes up to n times the nodes of the dictionary. It is built only when wanted, and is kept up
+ * to date when context words are put or removed through it. A context word is expected to be
+ * stored under one morse word only.
+ *
+ * Look-ups can run on several threads at the same time, but not while words are put or removed.
+ *
+ */
+public class MorseSuffixIndex {
+	private ContextWordTrie dictionary;
+	private ContextWordTrie suffixTrie;
+
+	/**
+	 * Build the index of the context words already in the dictionary.
+	 *
+	 * @param dictionary Context word trie
+	 */
+	public MorseSuffixIndex(ContextWordTrie dictionary) {
+		this.dictionary = dictionary;
+		this.suffixTrie = new ContextWordTrie(dictionary.getAnalyzer(), dictionary.getMorseCodeMap());
+
+		StringBuilder morseWord = new StringBuilder();
+		Iterator<TrieEntry<String, String>> iterator = dictionary.iterator(Collections.<String>emptyList());
+		while (iterator.hasNext()) {
+			TrieEntry<String, String> entry = iterator.next();
+			morseWord.setLength(0);
+			for (String element : entry.getKey()) {
+				morseWord.append(element);
+			}
+			putSuffixes(morseWord.toString(), entry.getValue());
+		}
+	}
+
+	public ContextWordTrie getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Convert context word to morse word and put both into the dictionary and the index.
+	 *
+	 * @param contextWord Context word
+	 * @return MorseWordToContextWord object
+	 */
+	public MorseWordToContextWord put(String contextWord) {
+		MorseWordToContextWord mwcc = dictionary.encode(contextWord);
+		put(mwcc.getKey(), mwcc.getValue());
+		return mwcc;
+	}
+
+	public void put(String morseWord, String contextWord) {
+		dictionary.put(morseWord, contextWord);
+		putSuffixes(morseWord, contextWord);
+	}
+
+	/**
+	 * Convert context word to morse word and remove it from the dictionary and the index.
+	 *
+	 * @param contextWord Context word
+	 * @return True if the context word was in the dictionary
+	 */
+	public boolean remove(String contextWord) {
+		MorseWordToContextWord mwcc = dictionary.encode(contextWord);
+		return remove(mwcc.getKey(), mwcc.getValue());
+	}
+
+	public boolean remove(String morseWord, String contextWord) {
+		if (dictionary.remove(morseWord, contextWord) == false) {
+			return false;
+		}
+
+		for (int i = 0; i < morseWord.length(); i++) {
+			suffixTrie.remove(morseWord.substring(i), contextWord);
+		}
+		return true;
+	}
+
+	private void putSuffixes(String morseWord, String contextWord) {
+		for (int i = 0; i < morseWord.length(); i++) {
+			suffixTrie.put(morseWord.subSequence(i, morseWord.length()), contextWord);
+		}
+	}
+
+	/**
+	 * @param morsePart Morse elements
+	 * @return Unmodifiable set of the context words whose morse words end with the elements
+	 */
+	public Set<String> endsWith(CharSequence morsePart) {
+		ContextWordTrie trie = find(morsePart);
+		if (trie == null || trie.getBestMatchSet() == null) {
+			return Collections.emptySet();
+		}
+		return Collections.unmodifiableSet(trie.getValueSet());
+	}
+
+	/**
+	 * @param morsePart Morse elements
+	 * @return Unmodifiable set of the context words with the fewest characters whose morse words
+	 * end with the elements
+	 */
+	public Set<String> getBestEndsWith(CharSequence morsePart) {
+		ContextWordTrie trie = find(morsePart);
+		if (trie == null || trie.getBestMatchSet() == null) {
+			return Collections.emptySet();
+		}
+		return trie.getBestMatchSet();
+	}
+
+	/**
+	 * @param morsePart Morse elements
+	 * @param limit Maximum number of context words
+	 * @return Set of the context words whose morse words contain the elements
+	 */
+	public Set<String> contains(CharSequence morsePart, int limit) {
+		Set<String> wordSet = new HashSet<String>();
+		ContextWordTrie trie = find(morsePart);
+		if (trie == null) {
+			return wordSet;
+		}
+
+		// a context word is stored at each suffix starting with the elements, so the value sets
+		// of the subtree are walked depth first, without building the key of each entry
+		List<ContextWordTrie> stack = new ArrayList<ContextWordTrie>();
+		stack.add(trie);
+		while (stack.isEmpty() == false) {
+			ContextWordTrie node = stack.remove(stack.size() - 1);
+			for (String contextWord : node.getValueSet()) {
+				if (wordSet.size() == limit) {
+					return wordSet;
+				}
+				wordSet.add(contextWord);
+			}
+			for (Trie<String, String> child : node.getChildren()) {
+				stack.add((ContextWordTrie) child);
+			}
+		}
+		return wordSet;
+	}
+
+	/**
+	 * @return Trie object of the morse part, or null if no suffix starts with it
+	 */
+	private ContextWordTrie find(CharSequence morsePart) {
+		// every context word would match
+		if (morsePart.length() == 0) {
+			return null;
+		}
+
+		ContextWordTrie trie = suffixTrie;
+		for (int i = 0; i < morsePart.length() && trie != null; i++) {
+			trie = trie.getChild(morsePart.charAt(i));
+		}
+		return trie;
+	}
+}
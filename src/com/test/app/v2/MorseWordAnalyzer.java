@@ -13,6 +13,27 @@ import com.test.util.trie.v2.KeyAnalyzer;
  *
  */
 public class MorseWordAnalyzer extends KeyAnalyzer<String> {
+	/**
+	 * Shared single character strings, so ASCII morse elements are not allocated per element.
+	 */
+	private static String[] Elements = new String[128];
+	
+	static {
+		for (char ch = 0; ch < Elements.length; ch++) {
+			Elements[ch] = Character.toString(ch).intern();
+		}
+	}
+	
+	/**
+	 * Get the morse character, which is the key in the trie, for a character of morse word.
+	 * 
+	 * @param ch Character of morse word
+	 * @return Morse character
+	 */
+	public static String element(char ch) {
+		return ch < Elements.length ? Elements[ch] : Character.toString(ch);
+	}
+	
 	/**
 	 * Analyze the morse word and convert into morse characters.
 	 * 
@@ -20,12 +41,11 @@ public class MorseWordAnalyzer extends KeyAnalyzer<String> {
 	 * @return List of morse characters
 	 */
     public List<String> analyze(String morseWord) {
-        ArrayList<String> list = new ArrayList<String>();
+        ArrayList<String> list = new ArrayList<String>(morseWord.length());
         
         // convert string to char list
         for (int i = 0; i < morseWord.length(); i++) {
-        	String ch = Character.toString(morseWord.charAt(i));
-        	list.add(ch);
+        	list.add(element(morseWord.charAt(i)));
         }
         return list;
     }
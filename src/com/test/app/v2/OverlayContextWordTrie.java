@@ -0,0 +1,406 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.test.util.trie.v2.Trie;
+
+/**
+ * Small dictionary of its own words layered over a large shared base dictionary.
+ *
+ * Words are only put into the overlay, so many overlays can share one base in memory. A
+ * look-up walks the base and the overlay in lockstep, one pair of nodes per element, and
+ * answers as if the words of both were in one trie. An element "?" stands for a dot or a dash,
+ * and the pairs of all the paths it opens are walked together, as in
+ * {@link ContextWordTrie#getBestMatch(CharSequence, MatchResult)}:
+ *
+ * 	1. Exact match: the context words of both nodes of the last element, and the best of
+ * 	   them are the ones with the fewest characters.
+ * 	2. Truncated morse word: the pairs of nodes are scanned forward level by level, and the
+ * 	   first level where either layer has context words gives the words of both layers.
+ * 	3. Extra morse elements: the words of the deepest pair, before the end of the morse word,
+ * 	   where either layer has context words.
+ *
+ * The weight of a context word is the sum of its weights in both layers, so weight put into the
+ * overlay adds to the weight of a base word. A tracer attached to the overlay records look-ups
+ * as one attached to a dictionary does.
+ *
+ * The base must not be changed while it is shared. Look-ups do not change either layer.
+ *
+ */
+public class OverlayContextWordTrie {
+	private ContextWordTrie base;
+	private ContextWordTrie overlay;
+
+	/**
+	 * Tracer of the look-ups, or null if they are not traced
+	 */
+	private volatile LookupTracer tracer;
+
+	/**
+	 * @param base Shared base dictionary
+	 */
+	public OverlayContextWordTrie(ContextWordTrie base) {
+		this.base = base;
+		this.overlay = new ContextWordTrie(base.getAnalyzer(), base.getMorseCodeMap());
+	}
+
+	public ContextWordTrie getBase() {
+		return base;
+	}
+
+	public ContextWordTrie getOverlay() {
+		return overlay;
+	}
+
+	/**
+	 * Convert context word to morse word and put both into the overlay.
+	 *
+	 * @param contextWord Context word
+	 * @return MorseWordToContextWord object
+	 */
+	public MorseWordToContextWord put(String contextWord) {
+		return overlay.put(contextWord);
+	}
+
+	public void put(String morseWord, String contextWord) {
+		overlay.put(morseWord, contextWord);
+	}
+
+	/**
+	 * Put the morse word and context word into the overlay, and add weight to the context word.
+	 *
+	 * @param morseWord Morse word
+	 * @param contextWord Context word
+	 * @param weight Weight, added to the weight of the context word in the base if any
+	 */
+	public void put(String morseWord, String contextWord, long weight) {
+		overlay.put(morseWord, contextWord, weight);
+	}
+
+	/**
+	 * @param morseWord Morse word
+	 * @param contextWord Context word
+	 * @return Weight of the context word in both layers, or 0 if it has no weight
+	 */
+	public long getWeight(String morseWord, String contextWord) {
+		return base.getWeight(morseWord, contextWord) + overlay.getWeight(morseWord, contextWord);
+	}
+
+	/**
+	 * @param tracer Look-up tracer, or null to stop tracing
+	 */
+	public void setTracer(LookupTracer tracer) {
+		this.tracer = tracer;
+	}
+
+	public LookupTracer getTracer() {
+		return tracer;
+	}
+
+	/**
+	 * Look up the best matched context words of both layers into a reusable result.
+	 *
+	 * @param morseWord Morse word
+	 * @param result Look-up result, cleared and then filled with the words and the match type
+	 * @return The result
+	 */
+	public MatchResult getBestMatch(CharSequence morseWord, MatchResult result) {
+		LookupTracer lookupTracer = tracer;
+		if (lookupTracer == null || lookupTracer.sample() == false) {
+			walk(morseWord, result);
+			return result;
+		}
+
+		long start = System.nanoTime();
+		int depth = walk(morseWord, result);
+		long nanos = System.nanoTime() - start;
+
+		// the nodes of the result are pairs
+		int numNodes = depth >= 0 ? result.getNodes().size() / 2 : 0;
+		lookupTracer.record(morseWord, result, depth, numNodes, nanos);
+		return result;
+	}
+
+	/**
+	 * Walk both layers and fill the result. The nodes of the result are kept as the base and
+	 * overlay node of each pair, either of which may be null: first the pairs of the element
+	 * being walked on all paths, and then the pairs whose context words are the best.
+	 *
+	 * @return Depth of the nodes whose words are the best, or -1 if there is none
+	 */
+	private int walk(CharSequence morseWord, MatchResult result) {
+		result.clear();
+		int last = morseWord.length() - 1;
+
+		// empty morse input
+		if (last < 0) {
+			result.setMatchType(MatchType.NONE);
+			return -1;
+		}
+
+		List<ContextWordTrie> level = result.getNodes();
+		level.add(base);
+		level.add(overlay);
+
+		// the deepest pairs on the matched paths, before the end of morse input, which have context words
+		List<ContextWordTrie> ancestors = result.getAncestors();
+		ancestors.clear();
+		int ancestorDepth = -1;
+
+		for (int i = 0; i <= last; i++) {
+			char element = morseWord.charAt(i);
+			List<ContextWordTrie> nextLevel = result.getScratch();
+			nextLevel.clear();
+
+			for (int k = 0; k < level.size(); k += 2) {
+				if (element == ContextWordTrie.UnknownElement) {
+					addChildren(level.get(k), level.get(k + 1), nextLevel);
+				} else {
+					ContextWordTrie baseChild = level.get(k) != null ? level.get(k).getChild(element) : null;
+					ContextWordTrie overlayChild = level.get(k + 1) != null ? level.get(k + 1).getChild(element) : null;
+					if (baseChild != null || overlayChild != null) {
+						nextLevel.add(baseChild);
+						nextLevel.add(overlayChild);
+					}
+				}
+			}
+
+			// neither layer has the element on any path, so the input morse word has wrong elements appended
+			if (nextLevel.isEmpty()) {
+				result.setMatchedLength(i);
+				scanBackward(result);
+				return ancestorDepth;
+			}
+
+			result.swapNodes();
+			level = nextLevel;
+
+			if (i < last && hasWords(level)) {
+				ancestors.clear();
+				ancestors.addAll(level);
+				keepPairsWithWords(ancestors);
+				ancestorDepth = i + 1;
+			}
+		}
+		result.setMatchedLength(last + 1);
+
+		if (hasWords(level) == false) {
+			int levels = scanForward(result);
+
+			if (result.isEmpty()) {
+				scanBackward(result);
+				return ancestorDepth;
+			}
+			return last + 1 + levels;
+		}
+
+		// the best words of the nodes with the shortest ones, in either layer and on any path
+		int bestLength = Integer.MAX_VALUE;
+		int numWords = 0;
+		for (int k = 0; k < level.size(); k += 2) {
+			ContextWordTrie baseTrie = level.get(k);
+			ContextWordTrie overlayTrie = level.get(k + 1);
+			bestLength = Math.min(bestLength, Math.min(bestLength(baseTrie), bestLength(overlayTrie)));
+
+			Set<String> baseWords = hasWords(baseTrie) ? baseTrie.getValueSet() : null;
+			numWords += baseWords != null ? baseWords.size() : 0;
+			if (hasWords(overlayTrie)) {
+				for (String contextWord : overlayTrie.getValueSet()) {
+					if (baseWords == null || baseWords.contains(contextWord) == false) {
+						numWords++;
+					}
+				}
+			}
+		}
+
+		int n = 0;
+		for (int k = 0; k < level.size(); k += 2) {
+			ContextWordTrie baseTrie = level.get(k);
+			ContextWordTrie overlayTrie = level.get(k + 1);
+			if (bestLength(baseTrie) == bestLength) {
+				addWords(baseTrie.getBestMatchSet(), result);
+			}
+			if (bestLength(overlayTrie) == bestLength) {
+				addWords(overlayTrie.getBestMatchSet(), result);
+			}
+			if (bestLength(baseTrie) == bestLength || bestLength(overlayTrie) == bestLength) {
+				level.set(n++, baseTrie);
+				level.set(n++, overlayTrie);
+			}
+		}
+		while (level.size() > n) {
+			level.remove(level.size() - 1);
+		}
+
+		result.setMatchType(numWords > 1 ? MatchType.AMBIGUOUS : MatchType.EXACT);
+		return last + 1;
+	}
+
+	/**
+	 * Look up the best matched context words without decorating them. How they are matched
+	 * is set to the look-up status.
+	 *
+	 * @param morseWord Morse word
+	 * @param status Look-up status, which gets the match type
+	 * @return Unmodifiable set of the best matched context words
+	 */
+	public Set<String> getBestMatch(String morseWord, LookupStatus status) {
+		MatchResult result = getBestMatch(morseWord, new MatchResult());
+		status.setMatchType(result.getMatchType());
+		return Collections.unmodifiableSet(new HashSet<String>(result.getWords()));
+	}
+
+	/**
+	 * Look up the best matched context words. A word is suffixed with "!" if it is one of
+	 * several perfect matches, or with "?" if the match is imperfect.
+	 *
+	 * @param morseWord Morse word
+	 * @return Set of the best matched context words
+	 */
+	public Set<String> getBestMatch(String morseWord) {
+		MatchResult result = getBestMatch(morseWord, new MatchResult());
+		return result.getMatchType().decorate(result.getWords());
+	}
+
+	public List<Set<String>> getBestMatches(List<String> morseWordList) {
+		List<Set<String>> resultList = new ArrayList<Set<String>>();
+
+		for (String morseWord : morseWordList) {
+			resultList.add(getBestMatch(morseWord.trim()));
+		}
+		return resultList;
+	}
+
+	/**
+	 * Scan the pairs of descendants of the pairs in the nodes of the result level by level.
+	 *
+	 * @return Number of levels scanned
+	 */
+	private int scanForward(MatchResult result) {
+		List<ContextWordTrie> level = result.getNodes();
+		int levels = 0;
+
+		while (level.isEmpty() == false) {
+			List<ContextWordTrie> nextLevel = result.getScratch();
+			nextLevel.clear();
+			for (int k = 0; k < level.size(); k += 2) {
+				addChildren(level.get(k), level.get(k + 1), nextLevel);
+			}
+
+			result.swapNodes();
+			level = nextLevel;
+			levels++;
+			result.addNodesVisited(level.size() / 2);
+
+			if (keepPairsWithWords(level)) {
+				break;
+			}
+		}
+
+		for (int k = 0; k < level.size(); k++) {
+			addWords(valueSet(level.get(k)), result);
+		}
+		result.setMatchType(MatchType.TRUNCATED);
+		return levels;
+	}
+
+	/**
+	 * Add the pairs of children of the two nodes.
+	 */
+	private static void addChildren(ContextWordTrie baseTrie, ContextWordTrie overlayTrie, List<ContextWordTrie> level) {
+		if (baseTrie != null) {
+			for (Trie<String, String> child : baseTrie.getChildren()) {
+				level.add((ContextWordTrie) child);
+				level.add(overlayTrie != null ? overlayTrie.getChild(child.getKey().charAt(0)) : null);
+			}
+		}
+
+		if (overlayTrie != null) {
+			for (Trie<String, String> child : overlayTrie.getChildren()) {
+				// pairs which have a base node are added above
+				if (baseTrie == null || baseTrie.getChild(child.getKey().charAt(0)) == null) {
+					level.add(null);
+					level.add((ContextWordTrie) child);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Take the words of the deepest ancestor pairs.
+	 */
+	private static void scanBackward(MatchResult result) {
+		List<ContextWordTrie> nodes = result.getNodes();
+		nodes.clear();
+		nodes.addAll(result.getAncestors());
+
+		for (int k = 0; k < nodes.size(); k++) {
+			addWords(valueSet(nodes.get(k)), result);
+		}
+
+		// no ancestor has context word
+		result.setMatchType(result.isEmpty() ? MatchType.NONE : MatchType.EXTRA);
+	}
+
+	/**
+	 * Keep only the pairs of the level in which either node has context words, if there are any.
+	 *
+	 * @return True if any pair has context words
+	 */
+	private static boolean keepPairsWithWords(List<ContextWordTrie> level) {
+		if (hasWords(level) == false) {
+			return false;
+		}
+
+		int n = 0;
+		for (int k = 0; k < level.size(); k += 2) {
+			ContextWordTrie baseTrie = level.get(k);
+			ContextWordTrie overlayTrie = level.get(k + 1);
+			if (hasWords(baseTrie) || hasWords(overlayTrie)) {
+				level.set(n++, baseTrie);
+				level.set(n++, overlayTrie);
+			}
+		}
+		while (level.size() > n) {
+			level.remove(level.size() - 1);
+		}
+		return true;
+	}
+
+	private static boolean hasWords(List<ContextWordTrie> level) {
+		for (int k = 0; k < level.size(); k++) {
+			if (hasWords(level.get(k))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static int bestLength(ContextWordTrie trie) {
+		return hasWords(trie) ? trie.getBestMatchSet().iterator().next().length() : Integer.MAX_VALUE;
+	}
+
+	private static boolean hasWords(ContextWordTrie trie) {
+		return trie != null && trie.getBestMatchSet() != null;
+	}
+
+	private static Set<String> valueSet(ContextWordTrie trie) {
+		return trie != null ? trie.getValueSet() : null;
+	}
+
+	/**
+	 * Add the words not added yet.
+	 */
+	private static void addWords(Set<String> words, MatchResult result) {
+		if (words == null) {
+			return;
+		}
+		for (String contextWord : words) {
+			result.addWordOnce(contextWord);
+		}
+	}
+}
@@ -0,0 +1,402 @@
+package com.test.app.v2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.test.util.trie.v2.TrieEntry;
+
+/**
+ * Path-compressed (radix) variant of {@link ContextWordTrie}.
+ *
+ * Below the branching points, most morse words go through long chains of nodes which have a
+ * single child and no context word. Here such a chain is collapsed into one edge, labelled with
+ * the run of morse elements it stands for, so there is one node per branching point or context
+ * word instead of one node per element.
+ *
+ * Look-ups give the same answers as {@link ContextWordTrie#getBestMatch(String)}:
+ *
+ * 	1. Exact match: the morse word ends at a node which has context words.
+ * 	2. Truncated morse word: the morse word ends at a node without context word, or in the middle
+ * 	   of an edge. The nearest descendants which have context words are found, where the
+ * 	   distance is the number of elements, not the number of edges.
+ * 	3. Extra morse elements: an element does not match a child or the label of an edge. The
+ * 	   context words of the deepest matched node are returned.
+ *
+ * Look-ups do not change the trie, so several threads can look up at the same time once
+ * it is built up.
+ *
+ */
+public class RadixContextWordTrie {
+	private Node root = new Node("");
+
+	private Map<String, String> morseCodeMap;
+
+	private MorseWordAnalyzer analyzer = new MorseWordAnalyzer();
+
+	public RadixContextWordTrie() {
+		this(ContextWordFinder.MorseCodeMap);
+	}
+
+	/**
+	 * @param morseCodeMap Morse code table converting context words to morse words
+	 */
+	public RadixContextWordTrie(Map<String, String> morseCodeMap) {
+		this.morseCodeMap = morseCodeMap;
+	}
+
+	/**
+	 * Build up from all the morse words and context words of a context word trie.
+	 *
+	 * @param trie Context word trie
+	 */
+	public RadixContextWordTrie(ContextWordTrie trie) {
+		this(trie.getMorseCodeMap());
+
+		Iterator<TrieEntry<String, String>> it = trie.iterator(new ArrayList<String>());
+		while (it.hasNext()) {
+			TrieEntry<String, String> entry = it.next();
+			StringBuilder morseWord = new StringBuilder(entry.getKey().size());
+			for (String element : entry.getKey()) {
+				morseWord.append(element);
+			}
+			put(morseWord.toString(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Convert context word to morse word and put both into trie.
+	 *
+	 * @param contextWord Context word to be put into trie
+	 * @return MorseWordToContextWord object
+	 */
+	public MorseWordToContextWord put(String contextWord) {
+		MorseWordToContextWord mwcc = analyzer.analyze(contextWord, morseCodeMap);
+		put(mwcc.getKey(), mwcc.getValue());
+		return mwcc;
+	}
+
+	/**
+	 * Put the morse word and context word into trie. An edge is split when the morse word
+	 * leaves it part way.
+	 *
+	 * @param morseWord Morse word
+	 * @param contextWord Context word
+	 */
+	public void put(String morseWord, String contextWord) {
+		// nothing to walk, such as a blank word
+		if (morseWord.length() == 0) {
+			return;
+		}
+
+		Node node = root;
+		int i = 0;
+
+		while (true) {
+			Node child = node.getChild(morseWord.charAt(i));
+
+			if (child == null) {
+				child = new Node(morseWord.substring(i));
+				node.addChild(child);
+				child.addValue(contextWord);
+				return;
+			}
+
+			String label = child.label;
+			int common = 1;
+			while (common < label.length() && i + common < morseWord.length()
+					&& label.charAt(common) == morseWord.charAt(i + common)) {
+				common++;
+			}
+
+			if (common < label.length()) {
+				// split the edge where the morse word leaves it
+				Node middle = new Node(label.substring(0, common));
+				node.replaceChild(middle);
+				child.label = label.substring(common);
+				middle.addChild(child);
+				child = middle;
+			}
+
+			i += common;
+			node = child;
+
+			if (i == morseWord.length()) {
+				node.addValue(contextWord);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Look up the best matched context words without decorating them. How they are matched
+	 * is set to the look-up status.
+	 *
+	 * @param morseWord Morse word
+	 * @param status Look-up status, which gets the match type
+	 * @return Unmodifiable set of the best matched context words
+	 */
+	public Set<String> getBestMatch(String morseWord, LookupStatus status) {
+		int len = morseWord.length();
+
+		// empty morse input
+		if (len == 0) {
+			status.setMatchType(MatchType.NONE);
+			return Collections.emptySet();
+		}
+
+		Node node = root;
+
+		// the deepest node on the matched path, before the end of morse input, which has context words
+		Node ancestor = null;
+		int i = 0;
+
+		while (i < len) {
+			Node child = node.getChild(morseWord.charAt(i));
+
+			// the input morse word has wrong elements appended
+			if (child == null) {
+				return scanBackward(ancestor, status);
+			}
+
+			String label = child.label;
+			int j = 0;
+			while (j < label.length() && i < len && label.charAt(j) == morseWord.charAt(i)) {
+				i++;
+				j++;
+			}
+
+			if (j < label.length()) {
+				// the input morse word is truncated in the middle of the edge
+				if (i == len) {
+					Set<String> matchSet = scanForward(child, label.length() - j, status);
+					return matchSet.isEmpty() ? scanBackward(ancestor, status) : matchSet;
+				}
+				return scanBackward(ancestor, status);
+			}
+
+			node = child;
+			if (i < len && node.valueSet != null) {
+				ancestor = node;
+			}
+		}
+
+		if (node.valueSet == null) {
+			Set<String> matchSet = scanForward(node, 0, status);
+			return matchSet.isEmpty() ? scanBackward(ancestor, status) : matchSet;
+		}
+
+		status.setMatchType(node.valueSet.size() > 1 ? MatchType.AMBIGUOUS : MatchType.EXACT);
+		return node.bestView;
+	}
+
+	/**
+	 * Look up the best matched context words. A word is suffixed with "!" if it is one of
+	 * several perfect matches, or with "?" if the match is imperfect.
+	 *
+	 * @param morseWord Morse word
+	 * @return Set of the best matched context words
+	 */
+	public Set<String> getBestMatch(String morseWord) {
+		LookupStatus status = new LookupStatus();
+		Set<String> wordSet = getBestMatch(morseWord, status);
+		return status.getMatchType().decorate(wordSet);
+	}
+
+	public List<Set<String>> getBestMatches(List<String> morseWordList) {
+		List<Set<String>> resultList = new ArrayList<Set<String>>();
+
+		for (String morseWord : morseWordList) {
+			resultList.add(getBestMatch(morseWord.trim()));
+		}
+		return resultList;
+	}
+
+	/**
+	 * Scan forward to find the context words with the fewest extra elements beyond those in
+	 * morse. Nodes are visited in the order of their distance in elements, so the first
+	 * distance which has context words gives all of them.
+	 *
+	 * @param node Node where the input morse word ends, or the node below the edge it ends in
+	 * @param remaining Number of elements left in the edge above the node, or 0 if the morse
+	 * word ends at the node
+	 */
+	private Set<String> scanForward(Node node, int remaining, LookupStatus status) {
+		Set<String> matchSet = new HashSet<String>();
+		PriorityQueue<Distance> queue = new PriorityQueue<Distance>();
+
+		if (remaining > 0) {
+			queue.add(new Distance(node, remaining));
+		} else {
+			for (int k = 0; k < node.numChildren; k++) {
+				queue.add(new Distance(node.children[k], node.children[k].label.length()));
+			}
+		}
+
+		int minDistance = Integer.MAX_VALUE;
+		while (queue.isEmpty() == false && queue.peek().distance <= minDistance) {
+			Distance next = queue.poll();
+
+			if (next.node.valueSet != null) {
+				minDistance = next.distance;
+				matchSet.addAll(next.node.valueSet);
+				continue;
+			}
+
+			for (int k = 0; k < next.node.numChildren; k++) {
+				Node child = next.node.children[k];
+				queue.add(new Distance(child, next.distance + child.label.length()));
+			}
+		}
+
+		status.setMatchType(MatchType.TRUNCATED);
+		return Collections.unmodifiableSet(matchSet);
+	}
+
+	private Set<String> scanBackward(Node ancestor, LookupStatus status) {
+		// no ancestor has context word
+		if (ancestor == null) {
+			status.setMatchType(MatchType.NONE);
+			return Collections.emptySet();
+		}
+
+		status.setMatchType(MatchType.EXTRA);
+		return ancestor.valueView;
+	}
+
+	/**
+	 * @return Number of nodes, not counting the root
+	 */
+	public int getNodeCount() {
+		int count = 0;
+		List<Node> stack = new ArrayList<Node>();
+		stack.add(root);
+
+		while (stack.isEmpty() == false) {
+			Node top = stack.remove(stack.size() - 1);
+			for (int k = 0; k < top.numChildren; k++) {
+				stack.add(top.children[k]);
+			}
+			count++;
+		}
+		return count - 1;
+	}
+
+	/**
+	 * Node at a branching point or at the end of a morse word.
+	 */
+	private static class Node {
+		/**
+		 * Morse elements of the edge from the parent
+		 */
+		private String label;
+
+		private Node[] children;
+		private int numChildren;
+
+		/**
+		 * Context words, or null if there is no context word
+		 */
+		private Set<String> valueSet;
+		private Set<String> valueView;
+
+		/**
+		 * Context words with the fewest characters, the value set itself while all have as many
+		 */
+		private Set<String> bestSet;
+		private Set<String> bestView;
+		private int bestLength;
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * @param element First element of the edge
+		 * @return Child node, or null if no edge starts with the element
+		 */
+		Node getChild(char element) {
+			for (int k = 0; k < numChildren; k++) {
+				if (children[k].label.charAt(0) == element) {
+					return children[k];
+				}
+			}
+			return null;
+		}
+
+		void addChild(Node child) {
+			if (children == null) {
+				children = new Node[2];
+			} else if (numChildren == children.length) {
+				Node[] newChildren = new Node[children.length * 2];
+				System.arraycopy(children, 0, newChildren, 0, numChildren);
+				children = newChildren;
+			}
+			children[numChildren++] = child;
+		}
+
+		/**
+		 * Replace the child whose edge starts with the same element.
+		 */
+		void replaceChild(Node child) {
+			for (int k = 0; k < numChildren; k++) {
+				if (children[k].label.charAt(0) == child.label.charAt(0)) {
+					children[k] = child;
+					return;
+				}
+			}
+		}
+
+		void addValue(String contextWord) {
+			if (valueSet == null) {
+				valueSet = new HashSet<String>(2);
+				valueView = Collections.unmodifiableSet(valueSet);
+			}
+
+			if (valueSet.add(contextWord) == false) {
+				return;
+			}
+
+			if (bestSet == null) {
+				bestSet = valueSet;
+				bestView = valueView;
+				bestLength = contextWord.length();
+			} else if (contextWord.length() < bestLength) {
+				bestSet = new HashSet<String>(2);
+				bestView = Collections.unmodifiableSet(bestSet);
+				bestLength = contextWord.length();
+				bestSet.add(contextWord);
+			} else if (contextWord.length() > bestLength) {
+				if (bestSet == valueSet) {
+					bestSet = new HashSet<String>(valueSet);
+					bestSet.remove(contextWord);
+					bestView = Collections.unmodifiableSet(bestSet);
+				}
+			} else if (bestSet != valueSet) {
+				bestSet.add(contextWord);
+			}
+		}
+	}
+
+	/**
+	 * Node with its distance in elements from where the input morse word ends.
+	 */
+	private static class Distance implements Comparable<Distance> {
+		private Node node;
+		private int distance;
+
+		Distance(Node node, int distance) {
+			this.node = node;
+			this.distance = distance;
+		}
+
+		public int compareTo(Distance other) {
+			return distance < other.distance ? -1 : (distance == other.distance ? 0 : 1);
+		}
+	}
+}
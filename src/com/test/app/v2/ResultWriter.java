@@ -0,0 +1,322 @@
+package com.test.app.v2;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Write look-up results in one of several formats, through a large reusable buffer.
+ *
+ * Results are encoded as UTF-8 straight into the buffer, which is written to the channel only
+ * when it is full or flushed. Results are written in the order they are given.
+ *
+ * 	PLAIN: each best matched context word on a line, suffixed with "!" if it is one of several
+ * 	       perfect matches, or with "?" if the match is imperfect.
+ * 	TSV: morse word, match type and the context words separated by commas, one result per line.
+ * 	       Backslash, tab, line breaks and commas within a field are escaped with a backslash,
+ * 	       as "\\", "\t", "\n", "\r" and "\,".
+ * 	CSV: morse word, match type and each context word in a field of its own, one result per
+ * 	       line. A field with a comma, a double quote or a line break is quoted, doubling its
+ * 	       double quotes.
+ * 	JSON_LINES: one JSON object per result, such as
+ * 	       {"morse":".--","match":"EXACT","words":["W"]}
+ *
+ * A writer is not thread safe.
+ *
+ */
+public class ResultWriter implements Closeable {
+	private static int BufferSize = 1024 * 1024;
+
+	public enum Format {
+		PLAIN, TSV, CSV, JSON_LINES
+	}
+
+	private WritableByteChannel channel;
+	private Format format;
+	private ByteBuffer buffer = ByteBuffer.allocate(BufferSize);
+
+	/**
+	 * Look-up result reused by {@link #writeAll(ContextWordTrie, List)}
+	 */
+	private MatchResult result = new MatchResult();
+
+	public ResultWriter(WritableByteChannel channel, Format format) {
+		this.channel = channel;
+		this.format = format;
+	}
+
+	public ResultWriter(OutputStream out, Format format) {
+		this(Channels.newChannel(out), format);
+	}
+
+	/**
+	 * Look up the morse words in order and write the results.
+	 *
+	 * @param dictionary Context word trie
+	 * @param morseWordList List of morse words
+	 */
+	public void writeAll(ContextWordTrie dictionary, List<String> morseWordList) throws IOException {
+		for (String morseWord : morseWordList) {
+			String trimmed = morseWord.trim();
+			write(trimmed, dictionary.getBestMatch(trimmed, result));
+		}
+	}
+
+	/**
+	 * Write the result of a look-up.
+	 *
+	 * @param morseWord Morse word looked up
+	 * @param result Look-up result
+	 */
+	public void write(CharSequence morseWord, MatchResult result) throws IOException {
+		List<String> words = result.getWords();
+
+		switch (format) {
+		case PLAIN:
+			String suffix = result.getMatchType().getIndicator();
+			for (int i = 0; i < words.size(); i++) {
+				put(words.get(i));
+				put(suffix);
+				put('\n');
+			}
+			break;
+		case TSV:
+			putTsv(morseWord);
+			put('\t');
+			put(result.getMatchType().name());
+			put('\t');
+			for (int i = 0; i < words.size(); i++) {
+				if (i > 0) {
+					put(',');
+				}
+				putTsv(words.get(i));
+			}
+			put('\n');
+			break;
+		case CSV:
+			putCsv(morseWord);
+			put(',');
+			put(result.getMatchType().name());
+			for (int i = 0; i < words.size(); i++) {
+				put(',');
+				putCsv(words.get(i));
+			}
+			put('\n');
+			break;
+		default:
+			put("{\"morse\":");
+			putJson(morseWord);
+			put(",\"match\":\"");
+			put(result.getMatchType().name());
+			put("\",\"words\":[");
+			for (int i = 0; i < words.size(); i++) {
+				if (i > 0) {
+					put(',');
+				}
+				putJson(words.get(i));
+			}
+			put("]}\n");
+			break;
+		}
+	}
+
+	/**
+	 * Write a set of best matched context words, already decorated as by
+	 * {@link ContextWordTrie#getBestMatch(String)}. Morse word and match type are not known, so
+	 * TSV, CSV and JSON lines leave them empty.
+	 *
+	 * @param candidates Set of best matched context words
+	 */
+	public void write(Set<String> candidates) throws IOException {
+		switch (format) {
+		case PLAIN:
+			for (String candidate : candidates) {
+				put(candidate);
+				put('\n');
+			}
+			break;
+		case TSV:
+			put("\t\t");
+			boolean first = true;
+			for (String candidate : candidates) {
+				if (first == false) {
+					put(',');
+				}
+				putTsv(candidate);
+				first = false;
+			}
+			put('\n');
+			break;
+		case CSV:
+			put(',');
+			for (String candidate : candidates) {
+				put(',');
+				putCsv(candidate);
+			}
+			put('\n');
+			break;
+		default:
+			put("{\"words\":[");
+			first = true;
+			for (String candidate : candidates) {
+				if (first == false) {
+					put(',');
+				}
+				putJson(candidate);
+				first = false;
+			}
+			put("]}\n");
+			break;
+		}
+	}
+
+	private void put(char ch) throws IOException {
+		if (buffer.remaining() < 4) {
+			flushBuffer();
+		}
+		buffer.put((byte) ch);
+	}
+
+	/**
+	 * Encode the characters as UTF-8 into the buffer.
+	 */
+	private void put(CharSequence s) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			if (buffer.remaining() < 4) {
+				flushBuffer();
+			}
+
+			int cp = s.charAt(i);
+			if (cp < 0x80) {
+				buffer.put((byte) cp);
+				continue;
+			}
+
+			if (Character.isHighSurrogate((char) cp) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+				cp = Character.toCodePoint((char) cp, s.charAt(++i));
+			}
+
+			if (cp < 0x800) {
+				buffer.put((byte) (0xc0 | (cp >> 6)));
+			} else if (cp < 0x10000) {
+				buffer.put((byte) (0xe0 | (cp >> 12)));
+				buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+			} else {
+				buffer.put((byte) (0xf0 | (cp >> 18)));
+				buffer.put((byte) (0x80 | ((cp >> 12) & 0x3f)));
+				buffer.put((byte) (0x80 | ((cp >> 6) & 0x3f)));
+			}
+			buffer.put((byte) (0x80 | (cp & 0x3f)));
+		}
+	}
+
+	/**
+	 * Put a JSON string, quoted and escaped.
+	 */
+	private void putJson(CharSequence s) throws IOException {
+		put('"');
+		int start = 0;
+
+		for (int i = 0; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			if (ch == '"' || ch == '\\' || ch < 0x20) {
+				put(s.subSequence(start, i));
+				if (ch == '"' || ch == '\\') {
+					put('\\');
+					put(ch);
+				} else {
+					put(String.format("\\u%04x", (int) ch));
+				}
+				start = i + 1;
+			}
+		}
+
+		if (start == 0) {
+			put(s);
+		} else {
+			put(s.subSequence(start, s.length()));
+		}
+		put('"');
+	}
+
+	/**
+	 * Put a TSV field, with backslash, tab, line breaks and commas escaped.
+	 */
+	private void putTsv(CharSequence s) throws IOException {
+		int start = 0;
+
+		for (int i = 0; i < s.length(); i++) {
+			char ch = s.charAt(i);
+			if (ch == '\\' || ch == '\t' || ch == '\n' || ch == '\r' || ch == ',') {
+				put(s.subSequence(start, i));
+				put('\\');
+				put(ch == '\t' ? 't' : (ch == '\n' ? 'n' : (ch == '\r' ? 'r' : ch)));
+				start = i + 1;
+			}
+		}
+
+		if (start == 0) {
+			put(s);
+		} else {
+			put(s.subSequence(start, s.length()));
+		}
+	}
+
+	/**
+	 * Put a CSV field, quoted if it has a comma, a double quote or a line break.
+	 */
+	private void putCsv(CharSequence s) throws IOException {
+		boolean quoted = false;
+		for (int i = 0; i < s.length() && quoted == false; i++) {
+			char ch = s.charAt(i);
+			quoted = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+		}
+		if (quoted == false) {
+			put(s);
+			return;
+		}
+
+		put('"');
+		int start = 0;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == '"') {
+				put(s.subSequence(start, i + 1));
+				put('"');
+				start = i + 1;
+			}
+		}
+		put(s.subSequence(start, s.length()));
+		put('"');
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Write the buffered results to the channel.
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+	}
+
+	/**
+	 * Write the buffered results and close the channel.
+	 */
+	public void close() throws IOException {
+		try {
+			flushBuffer();
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.test.util.inttrie.v2;
+
+/**
+ * One key per character, such as one morse element per character of a morse word. 
+ * Works for any alphabet without boxing the characters.
+ *
+ */
+public class CharKeyAnalyzer implements IntKeyAnalyzer<CharSequence> {
+	/**
+	 * {@link #analyze(CharSequence, IntKeyBuffer)}
+	 */
+	public void analyze(CharSequence input, IntKeyBuffer keys) {
+		for (int i = 0; i < input.length(); i++) {
+			keys.add(input.charAt(i));
+		}
+	}
+}
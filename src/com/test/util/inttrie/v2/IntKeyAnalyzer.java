@@ -0,0 +1,15 @@
+package com.test.util.inttrie.v2;
+
+/**
+ * Analyze and construct the prefix keys for int trie. 
+ *
+ */
+public interface IntKeyAnalyzer<T> {
+	/**
+	 * Analyze input and write keys into the buffer. The buffer is cleared by the caller.
+	 * 
+	 * @param input Input object
+	 * @param keys Buffer receiving the keys
+	 */
+	void analyze(T input, IntKeyBuffer keys);
+}
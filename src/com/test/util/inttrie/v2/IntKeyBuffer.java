@@ -0,0 +1,47 @@
+package com.test.util.inttrie.v2;
+
+/**
+ * Reusable buffer of int keys. The analyzer writes keys into it, and the buffer grows 
+ * when needed, so the same buffer can be used for every put and get.
+ *
+ */
+public class IntKeyBuffer {
+	private int[] keys;
+	private int size;
+	
+	public IntKeyBuffer() {
+		this(32);
+	}
+	
+	public IntKeyBuffer(int capacity) {
+		keys = new int[Math.max(1, capacity)];
+	}
+	
+	public void add(int key) {
+		if (size == keys.length) {
+			int[] newKeys = new int[keys.length * 2];
+			System.arraycopy(keys, 0, newKeys, 0, size);
+			keys = newKeys;
+		}
+		keys[size++] = key;
+	}
+	
+	public int get(int index) {
+		return keys[index];
+	}
+	
+	public int size() {
+		return size;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * @return Backing array, which is valid from 0 to size() - 1
+	 */
+	public int[] array() {
+		return keys;
+	}
+}
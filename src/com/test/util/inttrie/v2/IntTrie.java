@@ -0,0 +1,247 @@
+package com.test.util.inttrie.v2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 	A trie, or prefix tree, whose keys are primitive ints, such as characters or morse elements.
+ * 	It is the counterpart of {@link com.test.util.trie.v2.Trie} for inputs which can be analyzed
+ * 	into int tokens.
+ *
+ * 	Keys are never boxed. The analyzer writes the keys of an input into a reusable buffer, and
+ * 	each node keeps the keys of its immediate descendants in a sorted int array, searched
+ * 	by binary search.
+ *
+ * @param <T> Type of input analyzed into keys
+ * @param <V> Type of value
+ */
+public class IntTrie<T, V> {
+	/**
+	 * One key buffer per thread, reused by put and get
+	 */
+	private static ThreadLocal<IntKeyBuffer> KeyBuffer = new ThreadLocal<IntKeyBuffer>() {
+		protected IntKeyBuffer initialValue() {
+			return new IntKeyBuffer();
+		}
+	};
+
+	@SuppressWarnings("rawtypes")
+	private static IntTrie[] NoChildren = new IntTrie[0];
+
+	private static int[] NoKeys = new int[0];
+
+	/**
+	 * Common prefix of descendants of the node
+	 */
+	protected int key;
+
+	/**
+	 * Depth relative to the root
+	 */
+	protected int depth;
+
+	/**
+	 * Values associated with the node, or null if none has been put
+	 */
+	protected Set<V> valueSet;
+
+	/**
+	 * Sorted keys of immediate descendants, valid from 0 to numChildren - 1
+	 */
+	protected int[] childKeys = NoKeys;
+
+	/**
+	 * Immediate descendants in the order of their keys
+	 */
+	protected IntTrie<T, V>[] children;
+
+	protected int numChildren;
+
+	/**
+	 * Analyze input data and build up prefix keys
+	 */
+	protected IntKeyAnalyzer<T> analyzer;
+
+	@SuppressWarnings("unchecked")
+	public IntTrie(IntKeyAnalyzer<T> analyzer) {
+		this.analyzer = analyzer;
+		this.children = NoChildren;
+	}
+
+	public IntTrie(IntKeyAnalyzer<T> analyzer, int key) {
+		this(analyzer);
+		this.key = key;
+	}
+
+	/**
+	 * For each key, create a trie object
+	 *
+	 * @param key Key
+	 * @return Trie object being created
+	 */
+	protected IntTrie<T, V> createTrie(int key) {
+		return new IntTrie<T, V>(analyzer, key);
+	}
+
+	/**
+	 * @param key Key
+	 * @return Immediate descendant for the key, or null if it does not exist
+	 */
+	public IntTrie<T, V> getChild(int key) {
+		int index = Arrays.binarySearch(childKeys, 0, numChildren, key);
+		return index >= 0 ? children[index] : null;
+	}
+
+	/**
+	 * Get the immediate descendant for the key. If it does not exist, create one.
+	 *
+	 * @param key Key
+	 * @return Trie object of the immediate descendant
+	 */
+	protected IntTrie<T, V> getOrCreateChild(int key) {
+		int index = Arrays.binarySearch(childKeys, 0, numChildren, key);
+		if (index >= 0) {
+			return children[index];
+		}
+
+		if (numChildren == childKeys.length) {
+			int capacity = Math.max(2, numChildren * 2);
+			childKeys = Arrays.copyOf(childKeys, capacity);
+
+			@SuppressWarnings({"unchecked", "rawtypes"})
+			IntTrie<T, V>[] newChildren = new IntTrie[capacity];
+			System.arraycopy(children, 0, newChildren, 0, numChildren);
+			children = newChildren;
+		}
+
+		// keep the keys sorted
+		int insertAt = -index - 1;
+		System.arraycopy(childKeys, insertAt, childKeys, insertAt + 1, numChildren - insertAt);
+		System.arraycopy(children, insertAt, children, insertAt + 1, numChildren - insertAt);
+
+		IntTrie<T, V> child = createTrie(key);
+		child.depth = depth + 1;
+		childKeys[insertAt] = key;
+		children[insertAt] = child;
+		numChildren++;
+		return child;
+	}
+
+	/**
+	 * Put the value to the trie object corresponding to the last key.
+	 *
+	 * @param keys Array of keys
+	 * @param offset Index to the first key
+	 * @param length Number of keys
+	 * @param value Value object
+	 */
+	public void put(int[] keys, int offset, int length, V value) {
+		// nothing to walk, such as a blank word
+		if (length == 0) {
+			return;
+		}
+
+		IntTrie<T, V> trie = this;
+		for (int i = offset; i < offset + length; i++) {
+			trie = trie.getOrCreateChild(keys[i]);
+		}
+
+		if (trie.valueSet == null) {
+			trie.valueSet = new HashSet<V>(2);
+		}
+		trie.valueSet.add(value);
+	}
+
+	/**
+	 * Get the trie object corresponding to the last key.
+	 *
+	 * @param keys Array of keys
+	 * @param offset Index to the first key
+	 * @param length Number of keys
+	 * @return Trie object, or null if any prefix of the keys is not in the trie
+	 */
+	public IntTrie<T, V> getSubTrie(int[] keys, int offset, int length) {
+		IntTrie<T, V> trie = this;
+		for (int i = offset; i < offset + length && trie != null; i++) {
+			trie = trie.getChild(keys[i]);
+		}
+		return trie;
+	}
+
+	/**
+	 * Get the values stored in the trie object corresponding to the last key.
+	 *
+	 * @param keys Array of keys
+	 * @param offset Index to the first key
+	 * @param length Number of keys
+	 * @return Set of values, or null if the keys are not in the trie or have no values
+	 */
+	public Set<V> get(int[] keys, int offset, int length) {
+		if (length == 0) {
+			return null;
+		}
+
+		IntTrie<T, V> trie = getSubTrie(keys, offset, length);
+		return trie != null ? trie.valueSet : null;
+	}
+
+	public void put(IntKeyBuffer keys, V value) {
+		put(keys.array(), 0, keys.size(), value);
+	}
+
+	public Set<V> get(IntKeyBuffer keys) {
+		return get(keys.array(), 0, keys.size());
+	}
+
+	/**
+	 * Analyze input into the key buffer of the calling thread and put the value.
+	 *
+	 * @param input Input object
+	 * @param value Value object
+	 */
+	public void put(T input, V value) {
+		IntKeyBuffer keys = KeyBuffer.get();
+		keys.clear();
+		analyzer.analyze(input, keys);
+		put(keys, value);
+	}
+
+	/**
+	 * Analyze input into the key buffer of the calling thread and get the values.
+	 *
+	 * @param input Input object
+	 * @return Set of values, or null if the input is not in the trie or has no values
+	 */
+	public Set<V> get(T input) {
+		IntKeyBuffer keys = KeyBuffer.get();
+		keys.clear();
+		analyzer.analyze(input, keys);
+		return get(keys);
+	}
+
+	public Set<V> getValueSet() {
+		return valueSet;
+	}
+
+	public int getKey() {
+		return key;
+	}
+
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * @return Immediate descendants in the order of their keys
+	 */
+	public List<IntTrie<T, V>> getChildren() {
+		return Collections.unmodifiableList(Arrays.asList(children).subList(0, numChildren));
+	}
+
+	public IntKeyAnalyzer<T> getAnalyzer() {
+		return analyzer;
+	}
+}
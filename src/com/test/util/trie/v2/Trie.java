@@ -2,11 +2,16 @@ package com.test.util.trie.v2;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 	A trie, or prefix tree, is an ordered tree data structure that is used to store an associative array 
@@ -61,15 +66,14 @@ public class Trie<K, V> {
     }
 
 	public void clearVisited(Trie<K, V> trie) {
-		List<Trie<K, V>> childTrieList = new ArrayList<Trie<K, V>>(trie.map.values());
-
-		if (childTrieList.isEmpty() == false) {
-			for (Trie<K, V> childTrie : childTrieList) {
-				childTrie.visited = false;
-				clearVisited(childTrie);
-			}
-		} 
-		trie.visited = false;
+		List<Trie<K, V>> stack = new ArrayList<Trie<K, V>>();
+		stack.add(trie);
+		
+		while (stack.isEmpty() == false) {
+			Trie<K, V> top = stack.remove(stack.size() - 1);
+			top.visited = false;
+			stack.addAll(top.map.values());
+		}
 	}
 	
 	/**
@@ -84,43 +88,234 @@ public class Trie<K, V> {
 		return trie;
 	}
 	
+    /**
+     * Get the immediate descendant for the key. If it does not exist, create one.
+     * 
+     * @param key Key object
+     * @return Trie object of the immediate descendant
+     */
+    protected Trie<K, V> getOrCreateChild(K key) {
+        Trie<K, V> child = map.get(key);
+        if (child == null) {
+        	child = createTrie(key);
+        	child.depth = depth + 1;
+        	putChild(key, child);
+        }
+        return child;
+    }
+    
+    /**
+     * Put an immediate descendant, replacing the shared empty map left by {@link #compact()}.
+     * 
+     * @param key Key object
+     * @param child Trie object of the immediate descendant
+     */
+    protected void putChild(K key, Trie<K, V> child) {
+    	if (map.isEmpty()) {
+    		map = new HashMap<K, Trie<K, V>>(2);
+    	}
+    	map.put(key, child);
+    }
+    
+    /**
+     * Put the value to the trie object corresponding to the last key in the key list. 
+     * 
+     * The keys are walked in a loop rather than by recursion, so the stack depth does not 
+     * grow with the length of the key list. 
+     * 
+     * @param keys List of keys
+     * @param value Value object
+     * @param index Index to the first key to be put under this trie object
+     */
     protected void put(List<K> keys, V value, int index) {
-        K key = null;
+    	// nothing to walk, such as a blank word
+    	if (index >= keys.size()) {
+    		return;
+    	}
+    	
+        Trie<K, V> trie = this;
         
-        if (keys.size() == index + 1) {
-        	key = keys.get(index);
-            Trie<K, V> trie = map.get(key);
-            if (trie == null) {
-            	trie = createTrie(key);
-                map.put(key, trie);
-                trie.depth = index + 1;
-            }
-            
-            /* 
-             * The trie object corresponding to the last key in the 
-             * key list stores values.
-             */
-            trie.valueSet.add(value);
-        } else {
-            key = keys.get(index);
-            Trie<K, V> trie = map.get(key);
-            if (trie == null) {
-            	trie = createTrie(key);
-                map.put(key, trie);
-                trie.depth = index + 1;
-            }
-            trie.put(keys, value, ++index);
-        }        
+        for (int i = index; i < keys.size(); i++) {
+            trie = trie.getOrCreateChild(keys.get(i));
+        }
+        
+        /* 
+         * The trie object corresponding to the last key in the 
+         * key list stores values.
+         */
+        trie.addValue(value);
+    }
+    
+    /**
+     * Add a value to this trie object. Subclasses can override it to keep data 
+     * derived from the values up to date at insert time.
+     * 
+     * @param value Value object
+     */
+    protected void addValue(V value) {
+    	valueSet.add(value);
     }
     
+    /**
+     * Get the values stored in the trie object corresponding to the last key in the key list.
+     * 
+     * @param keys List of keys
+     * @param index Index to the first key to be looked up under this trie object
+     * @return Set of values, or null if any prefix of the keys is not in the trie
+     */
     public Set<V> get(List<K> keys, int index) {
-        if (keys.size() == index + 1) {
-            Trie<K, V> trie = map.get(keys.get(index));
-            return trie != null ? trie.valueSet : null;
-        } else {
-            Trie<K, V> trie = map.get(keys.get(index));
-            return trie.get(keys, ++index);
-        }        
+    	if (index >= keys.size()) {
+    		return null;
+    	}
+    	
+        Trie<K, V> trie = this;
+        
+        for (int i = index; i < keys.size(); i++) {
+        	trie = trie.map.get(keys.get(i));
+        	if (trie == null) {
+        		return null;
+        	}
+        }
+        return trie.valueSet;
+    }
+    
+    /**
+     * Merge the descendants and values of another trie, which is rooted at the same depth, into 
+     * this trie. A descendant which is only in the other trie is attached as it is instead of 
+     * being copied, so the other trie should not be used after merging. 
+     * 
+     * Tries built independently from words with different leading keys share few nodes, 
+     * so merging them costs little more than attaching their descendants. 
+     * 
+     * @param other Trie object to be merged into this trie
+     */
+    public void merge(Trie<K, V> other) {
+    	// pairs of target and source trie objects to be merged
+    	List<Trie<K, V>> stack = new ArrayList<Trie<K, V>>();
+    	stack.add(this);
+    	stack.add(other);
+    	
+    	while (stack.isEmpty() == false) {
+    		Trie<K, V> source = stack.remove(stack.size() - 1);
+    		Trie<K, V> target = stack.remove(stack.size() - 1);
+    		
+    		if (source.valueSet != null && source.valueSet.isEmpty() == false) {
+    			for (V value : source.valueSet) {
+    				target.addValue(value);
+    			}
+    		}
+    		
+    		for (Map.Entry<K, Trie<K, V>> entry : source.map.entrySet()) {
+    			Trie<K, V> targetChild = target.map.get(entry.getKey());
+    			
+    			if (targetChild == null) {
+    				target.putChild(entry.getKey(), entry.getValue());
+    			} else {
+    				stack.add(targetChild);
+    				stack.add(entry.getValue());
+    			}
+    		}
+    	}
+    }
+    
+    /**
+     * Remove the value from the trie object corresponding to the last key in the key list. 
+     * Trie objects left without values and descendants are pruned, from the deepest one up.
+     * 
+     * @param keys List of keys
+     * @param value Value object
+     * @return True if the value was in the trie
+     */
+    public boolean remove(List<K> keys, V value) {
+    	if (keys.isEmpty()) {
+    		return false;
+    	}
+    	
+    	// path.get(i) is the trie object of the first i keys
+    	List<Trie<K, V>> path = new ArrayList<Trie<K, V>>(keys.size() + 1);
+    	Trie<K, V> trie = this;
+    	path.add(trie);
+    	
+    	for (int i = 0; i < keys.size(); i++) {
+    		trie = trie.map.get(keys.get(i));
+    		if (trie == null) {
+    			return false;
+    		}
+    		path.add(trie);
+    	}
+    	
+    	if (trie.removeValue(value) == false) {
+    		return false;
+    	}
+    	
+    	for (int i = path.size() - 1; i > 0; i--) {
+    		Trie<K, V> child = path.get(i);
+    		if (child.valueSet.isEmpty() == false || child.map.isEmpty() == false) {
+    			break;
+    		}
+    		path.get(i - 1).map.remove(child.key);
+    	}
+    	return true;
+    }
+    
+    /**
+     * Remove a value from this trie object. Subclasses can override it to keep data 
+     * derived from the values up to date.
+     * 
+     * @param value Value object
+     * @return True if the value was in this trie object
+     */
+    protected boolean removeValue(V value) {
+    	return valueSet.remove(value);
+    }
+    
+    /**
+     * Give memory back after values have been removed. Maps and sets are copied to their 
+     * current size, and trie objects without descendants share one empty map.
+     */
+    public void compact() {
+		List<Trie<K, V>> stack = new ArrayList<Trie<K, V>>();
+		stack.add(this);
+		
+		while (stack.isEmpty() == false) {
+			Trie<K, V> top = stack.remove(stack.size() - 1);
+			stack.addAll(top.map.values());
+			top.compactNode();
+		}
+    }
+    
+    /**
+     * Compact the map and value set of this trie object.
+     */
+    protected void compactNode() {
+    	if (map.isEmpty()) {
+    		map = Collections.emptyMap();
+    	} else {
+    		Map<K, Trie<K, V>> compactMap = new HashMap<K, Trie<K, V>>(capacityFor(map.size()));
+    		compactMap.putAll(map);
+    		map = compactMap;
+    	}
+    	
+    	if (valueSet != null) {
+    		Set<V> compactSet = new HashSet<V>(capacityFor(valueSet.size()));
+    		compactSet.addAll(valueSet);
+    		valueSet = compactSet;
+    	}
+    }
+    
+    /**
+     * The copy constructors of HashMap and HashSet allocate at least 16 buckets, which is more 
+     * than most nodes need.
+     * 
+     * @param size Number of entries
+     * @return Initial capacity of a hash map or set which holds the entries without resizing
+     */
+    protected static int capacityFor(int size) {
+    	return Math.max(1, (int) Math.ceil(size / 0.75));
+    }
+    
+    public boolean remove(K key, V value) {
+        return remove(analyzer.analyze(key), value);
     }
     
     public void put(K key, V value) {
@@ -137,6 +332,64 @@ public class Trie<K, V> {
         return get(keys, 0);
     }
     
+    /**
+     * Get the trie object corresponding to the last key in the key list.
+     * 
+     * @param keys List of keys, or an empty list for this trie object
+     * @return Trie object, or null if any prefix of the keys is not in the trie
+     */
+    public Trie<K, V> getSubTrie(List<K> keys) {
+        Trie<K, V> trie = this;
+        
+        for (int i = 0; i < keys.size() && trie != null; i++) {
+        	trie = trie.map.get(keys.get(i));
+        }
+        return trie;
+    }
+    
+    /**
+     * Lazily enumerate the values under the prefix depth first, each with its path of keys.
+     * 
+     * @param prefix List of keys, or an empty list for all values in this trie
+     * @return Iterator of key path and value entries
+     */
+    public Iterator<TrieEntry<K, V>> iterator(List<K> prefix) {
+    	return iterator(prefix, false, Long.MAX_VALUE);
+    }
+    
+    /**
+     * Lazily enumerate the values under the prefix, each with its path of keys.
+     * 
+     * @param prefix List of keys, or an empty list for all values in this trie
+     * @param breadthFirst True to enumerate level by level, else depth first
+     * @param limit Maximum number of entries to enumerate
+     * @return Iterator of key path and value entries
+     */
+    public Iterator<TrieEntry<K, V>> iterator(List<K> prefix, boolean breadthFirst, long limit) {
+    	return new TrieIterator<K, V>(getSubTrie(prefix), prefix, breadthFirst, limit);
+    }
+    
+    /**
+     * {@link TrieSpliterator} over the values under the prefix.
+     * 
+     * @param prefix List of keys, or an empty list for all values in this trie
+     * @return Spliterator of key path and value entries
+     */
+    public Spliterator<TrieEntry<K, V>> spliterator(List<K> prefix) {
+    	return new TrieSpliterator<K, V>(getSubTrie(prefix), prefix);
+    }
+    
+    /**
+     * Stream of the values under the prefix, which can be limited with {@link Stream#limit(long)}.
+     * 
+     * @param prefix List of keys, or an empty list for all values in this trie
+     * @param parallel True for a parallel stream
+     * @return Stream of key path and value entries
+     */
+    public Stream<TrieEntry<K, V>> stream(List<K> prefix, boolean parallel) {
+    	return StreamSupport.stream(spliterator(prefix), parallel);
+    }
+    
     public Set<V> getValueSet() {
     	return valueSet;
     }
@@ -149,6 +402,10 @@ public class Trie<K, V> {
     	return key;
     }
     
+    public int getDepth() {
+    	return depth;
+    }
+    
     public void setVisited(boolean visited) {
     	this.visited = visited;
     }
@@ -0,0 +1,58 @@
+package com.test.util.trie.v2;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class is to store a value found in the trie together with the path of keys 
+ * from the root down to the trie object which stores the value.
+ *
+ */
+public class TrieEntry<K, V> implements Map.Entry<List<K>, V> {
+	private List<K> keys;
+	private V value;
+	
+	public TrieEntry(List<K> keys, V value) {
+		this.keys = keys;
+		this.value = value;
+	}
+
+	/**
+	 * {@link #getKey()}
+	 */
+	public List<K> getKey() {
+		return keys;
+	}
+
+	/**
+	 * {@link #getValue()}
+	 */
+	public V getValue() {
+		return value;
+	}
+
+	/**
+	 * Values are stored in the trie, so the entry cannot be changed.
+	 */
+	public V setValue(V value) {
+		throw new UnsupportedOperationException();
+	}
+	
+	public boolean equals(Object o) {
+		if (o instanceof Map.Entry == false) {
+			return false;
+		}
+		
+		Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+		return keys.equals(entry.getKey()) 
+				&& (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+	}
+	
+	public int hashCode() {
+		return keys.hashCode() ^ (value == null ? 0 : value.hashCode());
+	}
+	
+	public String toString() {
+		return keys + "=" + value;
+	}
+}
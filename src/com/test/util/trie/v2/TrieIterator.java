@@ -0,0 +1,158 @@
+package com.test.util.trie.v2;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazily enumerate the values stored in a trie object and its descendants. 
+ * 
+ * A descendant is only visited when the values before it have been taken, so memory does not
+ * grow with the number of values under the trie. Only the trie objects waiting to be visited 
+ * are kept, each linked to its parent for building the path of keys.
+ * 
+ * The trie should not be changed while it is being enumerated.
+ *
+ */
+public class TrieIterator<K, V> implements Iterator<TrieEntry<K, V>> {
+	private Cursor<K, V> cursor;
+	private boolean breadthFirst;
+	private long remaining;
+	private TrieEntry<K, V> next;
+	
+	/**
+	 * @param trie Trie object to be enumerated, or null if nothing to enumerate
+	 * @param prefix Keys from the root down to the trie object
+	 * @param breadthFirst True to visit descendants level by level, else depth first
+	 * @param limit Maximum number of values to enumerate
+	 */
+	public TrieIterator(Trie<K, V> trie, List<K> prefix, boolean breadthFirst, long limit) {
+		ArrayDeque<Step<K, V>> pending = new ArrayDeque<Step<K, V>>();
+		if (trie != null) {
+			pending.add(new Step<K, V>(trie, null));
+		}
+		
+		this.cursor = new Cursor<K, V>(prefix, pending);
+		this.breadthFirst = breadthFirst;
+		this.remaining = limit;
+	}
+	
+	public boolean hasNext() {
+		if (next == null && remaining > 0) {
+			next = cursor.next(breadthFirst);
+		}
+		return next != null;
+	}
+
+	public TrieEntry<K, V> next() {
+		if (hasNext() == false) {
+			throw new NoSuchElementException();
+		}
+		
+		TrieEntry<K, V> entry = next;
+		next = null;
+		remaining--;
+		return entry;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+	
+	/**
+	 * A trie object waiting to be visited, linked to the step of its parent.
+	 */
+	static class Step<K, V> {
+		Trie<K, V> trie;
+		Step<K, V> parent;
+		
+		Step(Trie<K, V> trie, Step<K, V> parent) {
+			this.trie = trie;
+			this.parent = parent;
+		}
+		
+		/**
+		 * @param prefix Keys from the root down to the first step
+		 * @return Keys from the root down to this step
+		 */
+		List<K> toKeys(List<K> prefix) {
+			List<K> path = new ArrayList<K>();
+			for (Step<K, V> step = this; step.parent != null; step = step.parent) {
+				path.add(step.trie.getKey());
+			}
+			Collections.reverse(path);
+			
+			List<K> keys = new ArrayList<K>(prefix.size() + path.size());
+			keys.addAll(prefix);
+			keys.addAll(path);
+			return Collections.unmodifiableList(keys);
+		}
+	}
+	
+	/**
+	 * Position in enumeration: the trie objects waiting to be visited, and the values 
+	 * of the trie object being visited.
+	 */
+	static class Cursor<K, V> {
+		List<K> prefix;
+		ArrayDeque<Step<K, V>> pending;
+		Step<K, V> current;
+		List<K> currentKeys;
+		Iterator<V> valueIterator;
+		
+		Cursor(List<K> prefix, ArrayDeque<Step<K, V>> pending) {
+			this.prefix = prefix;
+			this.pending = pending;
+		}
+		
+		boolean hasCurrentValue() {
+			return valueIterator != null && valueIterator.hasNext();
+		}
+		
+		/**
+		 * Visit the next trie object waiting. Its children are put at the front of the waiting
+		 * queue for depth first, or at the back for breadth first. 
+		 * 
+		 * @return False if no trie object is waiting
+		 */
+		boolean visitNext(boolean breadthFirst) {
+			Step<K, V> step = pending.pollFirst();
+			if (step == null) {
+				return false;
+			}
+			
+			for (Trie<K, V> childTrie : step.trie.getChildren()) {
+				if (breadthFirst) {
+					pending.addLast(new Step<K, V>(childTrie, step));
+				} else {
+					pending.addFirst(new Step<K, V>(childTrie, step));
+				}
+			}
+			
+			current = step;
+			currentKeys = null;
+			valueIterator = step.trie.getValueSet() != null ? step.trie.getValueSet().iterator() : null;
+			return true;
+		}
+		
+		/**
+		 * @return Next entry, or null if no more values
+		 */
+		TrieEntry<K, V> next(boolean breadthFirst) {
+			while (hasCurrentValue() == false) {
+				if (visitNext(breadthFirst) == false) {
+					return null;
+				}
+			}
+			
+			// values of the same trie object share the path of keys
+			if (currentKeys == null) {
+				currentKeys = current.toKeys(prefix);
+			}
+			return new TrieEntry<K, V>(currentKeys, valueIterator.next());
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.test.util.trie.v2;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+import com.test.util.trie.v2.TrieIterator.Cursor;
+import com.test.util.trie.v2.TrieIterator.Step;
+
+/**
+ * Spliterator over the values stored in a trie object and its descendants, visited depth first.
+ * 
+ * Splitting hands over half of the trie objects waiting to be visited. They are taken from the
+ * shallow end of the waiting queue, so the part handed over has large subtrees below it, and 
+ * parallel streams get balanced work without enumerating anything up front.
+ * 
+ * The trie should not be changed while it is being enumerated.
+ *
+ */
+public class TrieSpliterator<K, V> implements Spliterator<TrieEntry<K, V>> {
+	private Cursor<K, V> cursor;
+	
+	/**
+	 * @param trie Trie object to be enumerated, or null if nothing to enumerate
+	 * @param prefix Keys from the root down to the trie object
+	 */
+	public TrieSpliterator(Trie<K, V> trie, List<K> prefix) {
+		ArrayDeque<Step<K, V>> pending = new ArrayDeque<Step<K, V>>();
+		if (trie != null) {
+			pending.add(new Step<K, V>(trie, null));
+		}
+		this.cursor = new Cursor<K, V>(prefix, pending);
+	}
+	
+	private TrieSpliterator(Cursor<K, V> cursor) {
+		this.cursor = cursor;
+	}
+
+	public boolean tryAdvance(Consumer<? super TrieEntry<K, V>> action) {
+		TrieEntry<K, V> entry = cursor.next(false);
+		if (entry == null) {
+			return false;
+		}
+		
+		action.accept(entry);
+		return true;
+	}
+
+	public Spliterator<TrieEntry<K, V>> trySplit() {
+		// open up the only trie object waiting, so its children can be handed over
+		if (cursor.pending.size() == 1 && cursor.hasCurrentValue() == false) {
+			cursor.visitNext(false);
+		}
+		
+		int size = cursor.pending.size();
+		if (size < 2) {
+			return null;
+		}
+		
+		// the back of the queue has the shallowest trie objects
+		ArrayDeque<Step<K, V>> handedOver = new ArrayDeque<Step<K, V>>();
+		for (int i = 0; i < size / 2; i++) {
+			handedOver.addFirst(cursor.pending.pollLast());
+		}
+		return new TrieSpliterator<K, V>(new Cursor<K, V>(cursor.prefix, handedOver));
+	}
+
+	/**
+	 * The number of values is not known until they are enumerated.
+	 */
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	public int characteristics() {
+		return DISTINCT | NONNULL;
+	}
+}